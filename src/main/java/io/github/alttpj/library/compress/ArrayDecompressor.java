@@ -0,0 +1,218 @@
+/*
+ * Copyright 2020-2020 the ALttPJ Team @ https://github.com/alttpj
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *          http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.github.alttpj.library.compress;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Arrays;
+
+/**
+ * Decompresses one block into a region of a caller supplied array.
+ *
+ * <p>Each command is written straight into the destination and command 4 reads from it in place, so nothing is
+ * allocated per command. Each header is decoded once by {@link CommandHeader#entry(int)}.
+ * The source is read byte exact up to and including the end of stream marker.</p>
+ *
+ * <p>In growable mode, the destination is replaced by a larger copy when a command does not fit, see
+ * {@link #getTarget()}.</p>
+ */
+final class ArrayDecompressor {
+
+  /**
+   * Command 4, which copies existing bytes. The extended header can also encode the commands 5 to 7.
+   */
+  private static final int HIGHEST_COMMAND = 4;
+
+  private final InputStream source;
+
+  private final int start;
+
+  private final boolean growable;
+
+  private byte[] target;
+
+  private int end;
+
+  private int position;
+
+  ArrayDecompressor(final InputStream source, final byte[] target, final int offset, final int length) {
+    if (offset < 0 || length < 0 || length > target.length - offset) {
+      throw new IndexOutOfBoundsException("Cannot write [" + length + "] bytes at [" + offset + "] into [" + target.length + "] bytes.");
+    }
+
+    this.source = source;
+    this.target = target;
+    this.start = offset;
+    this.end = offset + length;
+    this.position = offset;
+    this.growable = false;
+  }
+
+  /**
+   * Creates a decompressor in growable mode, continuing a block of which {@code written} bytes are decompressed.
+   *
+   * @param source
+   *     the rest of the compressed block.
+   * @param target
+   *     the bytes decompressed so far, starting at index 0.
+   * @param written
+   *     the number of bytes decompressed so far.
+   */
+  ArrayDecompressor(final InputStream source, final byte[] target, final int written) {
+    this.source = source;
+    this.target = target;
+    this.start = 0;
+    this.end = target.length;
+    this.position = written;
+    this.growable = true;
+  }
+
+  /**
+   * Decompresses until the end of stream marker or the end of the source.
+   *
+   * @return the number of bytes written.
+   * @throws IOException
+   *     error reading the source, or the source is not a valid compressed block.
+   */
+  int decompress() throws IOException {
+    int header;
+
+    // like SnesDecompressor, a missing end of stream marker also ends the block.
+    while ((header = this.source.read()) != -1 && header != CommandHeader.END_OF_STREAM) {
+      final int entry = CommandHeader.entry(header);
+      final int length = CommandHeader.isExtendedEntry(entry)
+          ? CommandHeader.baseLengthOf(entry) + readByte()
+          : CommandHeader.baseLengthOf(entry);
+
+      final int command = CommandHeader.commandOf(entry);
+      // before the capacity check, so an unknown command fails alike for every destination.
+      if (command > HIGHEST_COMMAND) {
+        throw unknownCommand(command);
+      }
+
+      ensureCapacity(command, length);
+      evaluateCommand(command, length);
+      this.position += length;
+    }
+
+    return this.position - this.start;
+  }
+
+  /**
+   * Returns the destination, which in growable mode may be a larger copy of the array passed in.
+   *
+   * @return the array holding the decompressed bytes.
+   */
+  byte[] getTarget() {
+    return this.target;
+  }
+
+  private void ensureCapacity(final int command, final int length) {
+    if (length <= this.end - this.position) {
+      return;
+    }
+
+    if (!this.growable) {
+      throw new IllegalArgumentException("Destination too small: command [" + command + "] after [" + (this.position - this.start)
+          + "] bytes needs [" + length + "] bytes, but only [" + (this.end - this.position) + "] are left.");
+    }
+
+    this.target = Arrays.copyOf(this.target, Math.max(this.target.length * 2, this.position + length));
+    this.end = this.target.length;
+  }
+
+  private void evaluateCommand(final int command, final int length) throws IOException {
+    switch (command) {
+      case 0:
+        readFully(length);
+        break;
+      case 1:
+        Arrays.fill(this.target, this.position, this.position + length, (byte) readByte());
+        break;
+      case 2:
+        repeatWord((byte) readByte(), (byte) readByte(), length);
+        break;
+      case 3:
+        increment(readByte(), length);
+        break;
+      case 4:
+        copyExisting(readByte() | readByte() << 8, length);
+        break;
+      default:
+        throw unknownCommand(command);
+    }
+  }
+
+  private UnsupportedOperationException unknownCommand(final int command) {
+    // same type as in SnesDecompressor.evaluateCommand, where the decoder started out.
+    return new UnsupportedOperationException("Unknown command: [" + SnesDecompressor.toBinaryString((byte) command) + "] after ["
+        + (this.position - this.start) + "] bytes.");
+  }
+
+  private void repeatWord(final byte first, final byte second, final int length) {
+    final byte[] output = this.target;
+    final int last = this.position + length - 1;
+    int index = this.position;
+
+    while (index < last) {
+      output[index++] = first;
+      output[index++] = second;
+    }
+    if (index == last) {
+      output[index] = first;
+    }
+  }
+
+  private void increment(final int value, final int length) {
+    final byte[] output = this.target;
+    final int offset = this.position;
+
+    for (int ii = 0; ii < length; ii++) {
+      output[offset + ii] = (byte) (value + ii);
+    }
+  }
+
+  private void copyExisting(final int offset, final int length) throws IOException {
+    final int written = this.position - this.start;
+    if (offset >= written) {
+      throw new IOException("Offset [" + offset + "] points beyond the [" + written + "] decompressed bytes.");
+    }
+
+    SnesDecompressor.copyRepeated(this.target, this.start + offset, written - offset, this.target, this.position, length);
+  }
+
+  private void readFully(final int length) throws IOException {
+    int read = 0;
+    while (read < length) {
+      final int count = this.source.read(this.target, this.position + read, length - read);
+      if (count == -1) {
+        throw new EOFException("Expected [" + length + "] bytes to copy, but the stream ended after [" + read + "].");
+      }
+      read += count;
+    }
+  }
+
+  private int readByte() throws IOException {
+    final int value = this.source.read();
+    if (value == -1) {
+      throw new EOFException("Stream ended within a command after [" + (this.position - this.start) + "] bytes.");
+    }
+
+    return value;
+  }
+}
@@ -0,0 +1,135 @@
+/*
+ * Copyright 2020-2020 the ALttPJ Team @ https://github.com/alttpj
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *          http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.github.alttpj.library.compress;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Objects;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+
+/**
+ * Compresses many inputs concurrently on an {@link Executor}.
+ *
+ * <p>Each input is compressed by {@link SnesCompressor#compress(byte[], CompressionLevel)}, so no state is shared
+ * between tasks and a {@code BatchCompressor} can be used from several threads. Compression is CPU bound, so a pool
+ * with one thread per core gives the best throughput, e.g. {@link java.util.concurrent.Executors#newFixedThreadPool(int)}
+ * or the common {@link java.util.concurrent.ForkJoinPool}. An executor using virtual threads works as well, but does not
+ * make compression faster.</p>
+ */
+public final class BatchCompressor {
+
+  private final Executor executor;
+
+  private final CompressionLevel compressionLevel;
+
+  public BatchCompressor(final Executor executor) {
+    this(executor, CompressionLevel.GREEDY);
+  }
+
+  /**
+   * Creates a batch compressor.
+   *
+   * @param executor
+   *     runs one task per input. It is not shut down by this class.
+   * @param compressionLevel
+   *     the level to compress all inputs with.
+   */
+  public BatchCompressor(final Executor executor, final CompressionLevel compressionLevel) {
+    this.executor = Objects.requireNonNull(executor, "executor");
+    this.compressionLevel = Objects.requireNonNull(compressionLevel, "compressionLevel");
+  }
+
+  /**
+   * Compresses one input on the executor.
+   *
+   * @param input
+   *     the uncompressed bytes. Must not be changed until the future is completed.
+   * @return the future compressed bytes. Fails with the exception thrown while compressing.
+   * @throws java.util.concurrent.RejectedExecutionException
+   *     if the executor does not accept the task.
+   */
+  public CompletableFuture<byte[]> submit(final byte[] input) {
+    final CompletableFuture<byte[]> result = new CompletableFuture<>();
+    this.executor.execute(() -> {
+      try {
+        result.complete(SnesCompressor.compress(input, this.compressionLevel));
+      } catch (final RuntimeException | Error compressionException) {
+        result.completeExceptionally(compressionException);
+      }
+    });
+
+    return result;
+  }
+
+  /**
+   * Compresses all inputs on the executor.
+   *
+   * @param inputs
+   *     the uncompressed inputs.
+   * @return the future compressed bytes, in the order of the inputs.
+   */
+  public List<CompletableFuture<byte[]>> submitAll(final List<byte[]> inputs) {
+    final List<CompletableFuture<byte[]>> results = new ArrayList<>(inputs.size());
+    for (final byte[] input : inputs) {
+      results.add(submit(input));
+    }
+
+    return results;
+  }
+
+  /**
+   * Compresses all inputs on the executor and waits for the results.
+   *
+   * @param inputs
+   *     the uncompressed inputs.
+   * @return the compressed bytes, in the order of the inputs.
+   * @throws IOException
+   *     if an input could not be compressed, or the calling thread was interrupted while waiting.
+   */
+  public List<byte[]> compressAll(final List<byte[]> inputs) throws IOException {
+    final List<CompletableFuture<byte[]>> futures = submitAll(inputs);
+    final List<byte[]> results = new ArrayList<>(futures.size());
+    for (final CompletableFuture<byte[]> future : futures) {
+      results.add(await(future));
+    }
+
+    return results;
+  }
+
+  private static byte[] await(final CompletableFuture<byte[]> future) throws IOException {
+    try {
+      return future.get();
+    } catch (final InterruptedException interruptedException) {
+      Thread.currentThread().interrupt();
+      throw new InterruptedIOException("Interrupted while waiting for the compressed inputs.");
+    } catch (final ExecutionException executionException) {
+      final Throwable cause = executionException.getCause();
+      if (cause instanceof IOException) {
+        throw (IOException) cause;
+      }
+      if (cause instanceof RuntimeException) {
+        throw (RuntimeException) cause;
+      }
+
+      throw (Error) cause;
+    }
+  }
+}
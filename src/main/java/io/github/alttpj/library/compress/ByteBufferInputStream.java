@@ -0,0 +1,61 @@
+/*
+ * Copyright 2020-2020 the ALttPJ Team @ https://github.com/alttpj
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *          http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.github.alttpj.library.compress;
+
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+
+/**
+ * Reads the remaining bytes of a buffer, advancing its position.
+ */
+final class ByteBufferInputStream extends InputStream {
+
+  private final ByteBuffer buffer;
+
+  ByteBufferInputStream(final ByteBuffer buffer) {
+    this.buffer = buffer;
+  }
+
+  @Override
+  public int read() {
+    if (!this.buffer.hasRemaining()) {
+      return -1;
+    }
+
+    return this.buffer.get() & 0xFF;
+  }
+
+  @Override
+  public int read(final byte[] target, final int offset, final int length) {
+    if (length == 0) {
+      return 0;
+    }
+    if (!this.buffer.hasRemaining()) {
+      return -1;
+    }
+
+    final int count = Math.min(length, this.buffer.remaining());
+    this.buffer.get(target, offset, count);
+
+    return count;
+  }
+
+  @Override
+  public int available() {
+    return this.buffer.remaining();
+  }
+}
@@ -0,0 +1,97 @@
+/*
+ * Copyright 2020-2020 the ALttPJ Team @ https://github.com/alttpj
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *          http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.github.alttpj.library.compress;
+
+/**
+ * Decodes the header of a command.
+ *
+ * <p>A normal header {@code cccl llll} holds the command and the length - 1 (up to 32 bytes).
+ * An extended header starts with {@code 111c ccll}, followed by the lower eight bits of the length - 1
+ * (up to 1024 bytes). {@code 0xFF} ends the stream.</p>
+ *
+ * <p>A header is decoded into an entry holding the command, the base length and whether the header is extended.
+ * For an extended header, the length is the base length plus the extension byte.</p>
+ */
+final class CommandHeader {
+
+  static final int END_OF_STREAM = CompressorConstants.ENF_OF_COMPRESSED_STREAM & 0xFF;
+
+  /**
+   * First three bits are the command.
+   */
+  private static final int HEADER_MASK_COMMAND = 0b11100000;
+
+  /**
+   * Last five bits are the length.
+   */
+  private static final int HEADER_MASK_LEN = 0b00011111;
+
+  private static final int EXTENDED_MASK_COMMAND = 0b00011100;
+
+  private static final int EXTENDED_MASK_LEN = 0b00000011;
+
+  private static final int ENTRY_MASK_LENGTH = 0x7FF;
+
+  private static final int ENTRY_SHIFT_COMMAND = 16;
+
+  private static final int ENTRY_FLAG_EXTENDED = 1 << 24;
+
+  private CommandHeader() {
+    // util class.
+  }
+
+  /**
+   * Decodes a header into an entry.
+   *
+   * @param header
+   *     the header byte, {@code 0-255}.
+   * @return the entry, to be read with {@link #commandOf(int)}, {@link #baseLengthOf(int)} and {@link #isExtendedEntry(int)}.
+   */
+  static int entry(final int header) {
+    final boolean extended = (header & HEADER_MASK_COMMAND) == HEADER_MASK_COMMAND;
+    final int command = extended ? (header & EXTENDED_MASK_COMMAND) >> 2 : header >> 5;
+    final int baseLength = extended ? ((header & EXTENDED_MASK_LEN) << 8) + 1 : (header & HEADER_MASK_LEN) + 1;
+
+    return command << ENTRY_SHIFT_COMMAND | baseLength | (extended ? ENTRY_FLAG_EXTENDED : 0);
+  }
+
+  static int commandOf(final int entry) {
+    return entry >>> ENTRY_SHIFT_COMMAND & 0xFF;
+  }
+
+  /**
+   * Returns the length of a normal command, or the length without the extension byte of an extended command.
+   */
+  static int baseLengthOf(final int entry) {
+    return entry & ENTRY_MASK_LENGTH;
+  }
+
+  static boolean isExtendedEntry(final int entry) {
+    return (entry & ENTRY_FLAG_EXTENDED) != 0;
+  }
+
+  static int getCommand(final int header) {
+    return commandOf(entry(header & 0xFF));
+  }
+
+  /**
+   * Returns the number of bytes produced by a command with an extended header.
+   */
+  static int getExtendedLength(final int header, final int extensionByte) {
+    return baseLengthOf(entry(header & 0xFF)) + (extensionByte & 0xFF);
+  }
+}
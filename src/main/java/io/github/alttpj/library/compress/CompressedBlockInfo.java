@@ -0,0 +1,106 @@
+/*
+ * Copyright 2020-2020 the ALttPJ Team @ https://github.com/alttpj
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *          http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.github.alttpj.library.compress;
+
+import java.util.StringJoiner;
+
+/**
+ * Result of {@link CompressedBlockScanner#scan(byte[], int, int)}: the structure of a compressed block,
+ * determined without decompressing it.
+ */
+public final class CompressedBlockInfo {
+
+  private final int decompressedLength;
+
+  private final int compressedLength;
+
+  private final int errorPosition;
+
+  private final String error;
+
+  private CompressedBlockInfo(final int decompressedLength, final int compressedLength, final int errorPosition, final String error) {
+    this.decompressedLength = decompressedLength;
+    this.compressedLength = compressedLength;
+    this.errorPosition = errorPosition;
+    this.error = error;
+  }
+
+  static CompressedBlockInfo valid(final int decompressedLength, final int compressedLength) {
+    return new CompressedBlockInfo(decompressedLength, compressedLength, -1, null);
+  }
+
+  static CompressedBlockInfo invalid(final int decompressedLength, final int errorPosition, final String error) {
+    return new CompressedBlockInfo(decompressedLength, errorPosition, errorPosition, error);
+  }
+
+  /**
+   * Returns whether the block is well-formed and ends with the end of stream marker.
+   *
+   * @return {@code true} if the block can be decompressed and its end is marked.
+   */
+  public boolean isValid() {
+    return this.error == null;
+  }
+
+  /**
+   * Returns the number of bytes the block decompresses to. For an invalid block, only the commands before
+   * the error are counted.
+   *
+   * @return the decompressed length.
+   */
+  public int getDecompressedLength() {
+    return this.decompressedLength;
+  }
+
+  /**
+   * Returns the number of compressed bytes, including the end of stream marker. For an invalid block,
+   * this is the number of bytes before the erroneous command.
+   *
+   * @return the compressed length.
+   */
+  public int getCompressedLength() {
+    return this.compressedLength;
+  }
+
+  /**
+   * Returns the position of the header of the first erroneous command, relative to the start of the block.
+   *
+   * @return the position of the error, or {@code -1} if the block is valid.
+   */
+  public int getErrorPosition() {
+    return this.errorPosition;
+  }
+
+  /**
+   * Describes the first error.
+   *
+   * @return the error, or {@code null} if the block is valid.
+   */
+  public String getError() {
+    return this.error;
+  }
+
+  @Override
+  public String toString() {
+    return new StringJoiner(", ", "CompressedBlockInfo{", "}")
+        .add("decompressedLength=" + this.decompressedLength)
+        .add("compressedLength=" + this.compressedLength)
+        .add("errorPosition=" + this.errorPosition)
+        .add("error='" + this.error + "'")
+        .toString();
+  }
+}
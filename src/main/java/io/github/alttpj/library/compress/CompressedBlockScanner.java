@@ -0,0 +1,118 @@
+/*
+ * Copyright 2020-2020 the ALttPJ Team @ https://github.com/alttpj
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *          http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.github.alttpj.library.compress;
+
+import java.nio.ByteBuffer;
+
+/**
+ * Walks the headers and operands of a compressed block without decompressing it.
+ *
+ * <p>Only the headers and the offsets of command 4 are decoded, and nothing is allocated besides the result and,
+ * for {@link #scan(byte[], int, int)}, a {@link ByteBuffer} view of the array. So a whole ROM can be scanned for
+ * candidate blocks cheaply. A block is well-formed if it ends with the end of stream marker, all commands are
+ * known and complete, and each command 4 refers to already decompressed bytes.</p>
+ *
+ * <p>This is stricter than the decompressors, which also stop at the end of their input without a marker.
+ * In a ROM, the block is followed by unrelated bytes, so only the marker tells where it ends. A block without the
+ * marker is reported as invalid, with the error at the end of the scanned bytes.</p>
+ */
+public final class CompressedBlockScanner {
+
+  private static final int COMMAND_COPY_EXISTING = CompressionAlgorithms.COPY_EXISTING.ordinal();
+
+  private static final int COMMAND_COUNT = CompressionAlgorithms.values().length;
+
+  private CompressedBlockScanner() {
+    // util class.
+  }
+
+  /**
+   * Scans the block starting at {@code data[offset]}.
+   *
+   * @param data
+   *     the array holding the block.
+   * @param offset
+   *     the first byte of the block.
+   * @param length
+   *     the number of bytes the block may span at most.
+   * @return the lengths of the block, and the first error if it is not well-formed.
+   */
+  public static CompressedBlockInfo scan(final byte[] data, final int offset, final int length) {
+    if (offset < 0 || length < 0 || length > data.length - offset) {
+      throw new IndexOutOfBoundsException("Cannot scan [" + length + "] bytes at [" + offset + "] in [" + data.length + "] bytes.");
+    }
+
+    return scan(ByteBuffer.wrap(data), offset, length);
+  }
+
+  /**
+   * Scans the block starting at the position of the {@code buffer}, up to its limit.
+   * The position of the buffer is not changed.
+   *
+   * @param buffer
+   *     the buffer holding the block.
+   * @return the lengths of the block, and the first error if it is not well-formed.
+   */
+  public static CompressedBlockInfo scan(final ByteBuffer buffer) {
+    return scan(buffer, buffer.position(), buffer.remaining());
+  }
+
+  private static CompressedBlockInfo scan(final ByteBuffer buffer, final int offset, final int length) {
+    final int end = offset + length;
+    int position = offset;
+    int decompressedLength = 0;
+
+    while (position < end) {
+      final int header = buffer.get(position) & 0xFF;
+      if (header == CommandHeader.END_OF_STREAM) {
+        return CompressedBlockInfo.valid(decompressedLength, position + 1 - offset);
+      }
+
+      final int entry = CommandHeader.entry(header);
+      final boolean extended = CommandHeader.isExtendedEntry(entry);
+      final int command = CommandHeader.commandOf(entry);
+      final int operandPosition = position + (extended ? 2 : 1);
+      if (command >= COMMAND_COUNT) {
+        return CompressedBlockInfo.invalid(decompressedLength, position - offset, "Unknown command [" + command + "].");
+      }
+      if (operandPosition > end) {
+        return CompressedBlockInfo.invalid(decompressedLength, position - offset, "Extended header is truncated.");
+      }
+
+      final int count = extended
+          ? CommandHeader.baseLengthOf(entry) + (buffer.get(position + 1) & 0xFF)
+          : CommandHeader.baseLengthOf(entry);
+      final int next = operandPosition + CompressionCosts.getOperandLength(command, count);
+      if (next > end) {
+        return CompressedBlockInfo.invalid(decompressedLength, position - offset, "Command [" + command + "] is truncated.");
+      }
+
+      if (command == COMMAND_COPY_EXISTING) {
+        final int source = buffer.get(operandPosition) & 0xFF | (buffer.get(operandPosition + 1) & 0xFF) << 8;
+        if (source >= decompressedLength) {
+          return CompressedBlockInfo.invalid(decompressedLength, position - offset,
+              "Offset [" + source + "] points beyond the [" + decompressedLength + "] decompressed bytes.");
+        }
+      }
+
+      decompressedLength += count;
+      position = next;
+    }
+
+    return CompressedBlockInfo.invalid(decompressedLength, position - offset, "Missing end of stream marker.");
+  }
+}
@@ -0,0 +1,136 @@
+/*
+ * Copyright 2020-2020 the ALttPJ Team @ https://github.com/alttpj
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *          http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.github.alttpj.library.compress;
+
+import static io.github.alttpj.library.compress.CompressorConstants.COMMAND_LENGTH_MAX_EXTENDED;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+
+/**
+ * Computes compressed sizes without building the compressed data.
+ */
+final class CompressedSizeEstimator {
+
+  private static final int COMMAND_COPY = CompressionAlgorithms.READ_AS_IS.ordinal();
+
+  private static final int COMMAND_COPY_EXISTING = CompressionAlgorithms.COPY_EXISTING.ordinal();
+
+  private static final int MAX_COUNT_EXTENDED = COMMAND_LENGTH_MAX_EXTENDED + 1;
+
+  private static final CompressionAlgorithm[] ALGORITHMS = CompressionAlgorithms.getSharedInstances();
+
+  private CompressedSizeEstimator() {
+    // util class.
+  }
+
+  /**
+   * Runs the parse of the given level and only counts the bytes written.
+   *
+   * @param input
+   *     the uncompressed input.
+   * @param compressionLevel
+   *     the level to parse with.
+   * @return the exact compressed size, including the end of stream marker.
+   */
+  static int getCompressedSize(final byte[] input, final CompressionLevel compressionLevel) {
+    final CountingOutputStream output = new CountingOutputStream();
+    final CompressionScratch scratch = CompressionScratch.forCurrentThread();
+    try {
+      SnesCompressor.compressRange(input, 0, input.length, compressionLevel, output, scratch);
+    } catch (final IOException ioException) {
+      // not thrown by a CountingOutputStream.
+      throw new UncheckedIOException(ioException);
+    } finally {
+      scratch.release();
+    }
+
+    return output.count + 1;
+  }
+
+  /**
+   * Parses greedily with the run commands only and sums up their sizes. Without command 4 there is no match
+   * finder to set up or search, and nothing is encoded.
+   *
+   * @param input
+   *     the uncompressed input.
+   * @return the size of a valid encoding of the input, including the end of stream marker.
+   */
+  static int getUpperBound(final byte[] input) {
+    int size = 1;
+    int literalStart = 0;
+    int position = 0;
+
+    while (position < input.length) {
+      int bestCommand = COMMAND_COPY;
+      int bestCount = 1;
+      int bestSavedBytes = 0;
+      for (int command = COMMAND_COPY + 1; command < COMMAND_COPY_EXISTING; command++) {
+        final int commandLength = CompressionMatch.getCommandLength(ALGORITHMS[command].match(input, position, input.length));
+        if (commandLength == 0) {
+          continue;
+        }
+
+        final int count = commandLength + 1;
+        final int savedBytes = CompressionCosts.getSavedBytes(command, count);
+        if (savedBytes > bestSavedBytes || savedBytes == bestSavedBytes && count > bestCount && savedBytes > 0) {
+          bestCommand = command;
+          bestCount = count;
+          bestSavedBytes = savedBytes;
+        }
+      }
+
+      if (bestCommand == COMMAND_COPY) {
+        position++;
+        if (position - literalStart == MAX_COUNT_EXTENDED) {
+          size += CompressionCosts.getCommandSize(COMMAND_COPY, MAX_COUNT_EXTENDED);
+          literalStart = position;
+        }
+        continue;
+      }
+
+      size += getCopySize(position - literalStart) + CompressionCosts.getCommandSize(bestCommand, bestCount);
+      position += bestCount;
+      literalStart = position;
+    }
+
+    return size + getCopySize(position - literalStart);
+  }
+
+  private static int getCopySize(final int count) {
+    return count == 0 ? 0 : CompressionCosts.getCommandSize(COMMAND_COPY, count);
+  }
+
+  /**
+   * Discards the bytes written to it, only counting them.
+   */
+  private static final class CountingOutputStream extends OutputStream {
+
+    private int count;
+
+    @Override
+    public void write(final int value) {
+      this.count++;
+    }
+
+    @Override
+    public void write(final byte[] buffer, final int offset, final int length) {
+      this.count += length;
+    }
+  }
+}
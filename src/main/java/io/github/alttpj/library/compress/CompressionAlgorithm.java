@@ -16,12 +16,105 @@
 
 package io.github.alttpj.library.compress;
 
+import java.util.Arrays;
+
+/**
+ * One of the commands of the compression format.
+ *
+ * <p>{@link #match(byte[], int, int)} and {@link #encode(byte[], int, long)} must not change the state of the
+ * instance, so a single instance can serve all threads, see {@link CompressionAlgorithms#getSharedInstance()}.
+ * {@code brute} and {@code apply} may keep the result of the last search in the instance, for implementations written
+ * against the first version of this interface. The defaults of {@code match} and {@code encode} call them, so such
+ * implementations must override {@code match} and {@code encode} before one instance is used by several threads.</p>
+ */
 public interface CompressionAlgorithm {
 
   int getCommandNum();
 
+  /**
+   * Finds the longest command for {@code input}.
+   *
+   * @param input
+   *     the bytes to compress.
+   * @param alreadyProcessedUncompressed
+   *     the bytes before {@code input}.
+   * @return the command length (i.e. the number of bytes consumed minus one), or 0 if not applicable.
+   */
   int brute(final byte[] input, byte[] alreadyProcessedUncompressed);
 
+  /**
+   * Same as {@link #brute(byte[], byte[])}, but reads both the history and the input from one array.
+   * The default implementation copies both, implementations should override it.
+   *
+   * @param data
+   *     the uncompressed data.
+   * @param position
+   *     the first byte to compress. All bytes before were already processed.
+   * @param limit
+   *     the end (exclusive) of the bytes available for compression.
+   * @return the command length (i.e. the number of bytes consumed minus one), or 0 if not applicable.
+   */
+  default int brute(final byte[] data, final int position, final int limit) {
+    return brute(Arrays.copyOfRange(data, position, limit), Arrays.copyOf(data, position));
+  }
+
+  /**
+   * Creates the command for the result of the last call to {@link #brute(byte[], byte[])}.
+   *
+   * @param input
+   *     the bytes to compress.
+   * @param commandLength
+   *     the number of bytes to consume minus one.
+   * @return the compressed command.
+   */
   byte[] apply(final byte[] input, final int commandLength);
 
+  /**
+   * Same as {@link #apply(byte[], int)}, but reads the input from {@code data} starting at {@code position}.
+   * The default implementation copies the input of the command, implementations should override it.
+   *
+   * @param data
+   *     the uncompressed data.
+   * @param position
+   *     the first byte of the command.
+   * @param commandLength
+   *     the number of bytes to consume minus one.
+   * @return the compressed command.
+   */
+  default byte[] apply(final byte[] data, final int position, final int commandLength) {
+    return apply(Arrays.copyOfRange(data, position, Math.min(position + commandLength + 1, data.length)), commandLength);
+  }
+
+  /**
+   * Finds the longest command at {@code position} without changing the state of this instance.
+   * The default calls {@link #brute(byte[], int, int)}, so implementations which keep state there must override
+   * this method.
+   *
+   * @param data
+   *     the uncompressed data.
+   * @param position
+   *     the first byte to compress. All bytes before were already processed.
+   * @param limit
+   *     the end (exclusive) of the bytes available for compression.
+   * @return the match, see {@link CompressionMatch}, or {@link CompressionMatch#NONE} if not applicable.
+   */
+  default long match(final byte[] data, final int position, final int limit) {
+    return CompressionMatch.of(brute(data, position, limit));
+  }
+
+  /**
+   * Creates the command for a match. Depends on the arguments only. The default calls
+   * {@link #apply(byte[], int, int)}, so implementations which keep state there must override this method.
+   *
+   * @param data
+   *     the uncompressed data.
+   * @param position
+   *     the first byte of the command.
+   * @param match
+   *     the match found at {@code position}, or a shorter one.
+   * @return the compressed command.
+   */
+  default byte[] encode(final byte[] data, final int position, final long match) {
+    return apply(data, position, CompressionMatch.getCommandLength(match));
+  }
 }
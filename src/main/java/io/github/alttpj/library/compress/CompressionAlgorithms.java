@@ -34,10 +34,18 @@ public enum CompressionAlgorithms {
 
   private final Class<? extends CompressionAlgorithm> compressionAlgorithm;
 
+  private final CompressionAlgorithm sharedInstance;
+
   CompressionAlgorithms(final Class<? extends CompressionAlgorithm> compressionAlgorithm) {
     this.compressionAlgorithm = compressionAlgorithm;
+    this.sharedInstance = getCompressionAlgorithm();
   }
 
+  /**
+   * Returns a new instance, e.g. for using the stateful {@link CompressionAlgorithm#brute(byte[], int, int)}.
+   *
+   * @return a new instance of the algorithm.
+   */
   public CompressionAlgorithm getCompressionAlgorithm() {
     try {
       return this.compressionAlgorithm.getConstructor().newInstance();
@@ -46,6 +54,31 @@ public enum CompressionAlgorithms {
     }
   }
 
+  /**
+   * Returns the instance shared by the compressors of this package. Only {@link CompressionAlgorithm#match(byte[], int, int)},
+   * {@link CompressionAlgorithm#encode(byte[], int, long)} and {@link CompressionAlgorithm#getCommandNum()} are used on
+   * it, which are thread-safe. It is not handed out, as callers of the stateful {@code brute} and {@code apply} need an
+   * instance of their own, see {@link #getCompressionAlgorithm()}.
+   *
+   * @return the shared instance of the algorithm.
+   */
+  CompressionAlgorithm getSharedInstance() {
+    return this.sharedInstance;
+  }
+
+  /**
+   * Returns the shared instances, indexed by the command number.
+   */
+  static CompressionAlgorithm[] getSharedInstances() {
+    final CompressionAlgorithms[] commands = values();
+    final CompressionAlgorithm[] algorithms = new CompressionAlgorithm[commands.length];
+    for (final CompressionAlgorithms command : commands) {
+      algorithms[command.ordinal()] = command.getSharedInstance();
+    }
+
+    return algorithms;
+  }
+
   @Override
   public String toString() {
     return new StringJoiner(", ", "CompressionAlgorithms{", "}")
@@ -0,0 +1,104 @@
+/*
+ * Copyright 2020-2020 the ALttPJ Team @ https://github.com/alttpj
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *          http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.github.alttpj.library.compress;
+
+import static io.github.alttpj.library.compress.CompressorConstants.COMMAND_LENGTH_MAX_EXTENDED;
+import static io.github.alttpj.library.compress.CompressorConstants.COMMAND_LENGTH_MAX_NORMAL;
+
+/**
+ * Encoded size of each command, used to rank candidates by the bytes they save.
+ *
+ * <p>A command consists of a header and an operand. The header takes one byte for up to 32 bytes
+ * and two bytes (extended header) for up to 1024 bytes. The operand is the copied bytes for a copy,
+ * one byte for a repeated or incremented byte and two bytes for a repeated word or an offset.</p>
+ */
+public final class CompressionCosts {
+
+  /**
+   * Operand length by command number; the copy (0) stores all of its bytes.
+   */
+  private static final int[] OPERAND_LENGTHS = {0, 1, 2, 1, 2};
+
+  private static final int MAX_COUNT_NORMAL = COMMAND_LENGTH_MAX_NORMAL + 1;
+
+  private static final int MAX_COUNT_EXTENDED = COMMAND_LENGTH_MAX_EXTENDED + 1;
+
+  private CompressionCosts() {
+    // util class.
+  }
+
+  /**
+   * Returns the length of the header for a command consuming {@code count} bytes.
+   *
+   * @param count
+   *     the number of uncompressed bytes, i.e. the command length + 1.
+   * @return 1 for a normal header, 2 for an extended header.
+   */
+  public static int getHeaderLength(final int count) {
+    if (count < 1 || count > MAX_COUNT_EXTENDED) {
+      throw new IllegalArgumentException("Count must be between 1 and " + MAX_COUNT_EXTENDED + " but was [" + count + "].");
+    }
+
+    return count > MAX_COUNT_NORMAL ? 2 : 1;
+  }
+
+  /**
+   * Returns the encoded size of a command.
+   *
+   * @param commandNum
+   *     the command number, see {@link CompressionAlgorithm#getCommandNum()}.
+   * @param count
+   *     the number of uncompressed bytes, i.e. the command length + 1.
+   * @return the number of bytes written for the command, including the header.
+   */
+  public static int getCommandSize(final int commandNum, final int count) {
+    return getHeaderLength(count) + getOperandLength(commandNum, count);
+  }
+
+  /**
+   * Returns the number of bytes following the header of a command.
+   *
+   * @param commandNum
+   *     the command number, see {@link CompressionAlgorithm#getCommandNum()}.
+   * @param count
+   *     the number of uncompressed bytes, i.e. the command length + 1.
+   * @return the length of the operand.
+   * @throws IllegalArgumentException
+   *     if there is no such command.
+   */
+  public static int getOperandLength(final int commandNum, final int count) {
+    if (commandNum < 0 || commandNum >= OPERAND_LENGTHS.length) {
+      throw new IllegalArgumentException("Unknown command [" + commandNum + "].");
+    }
+
+    return commandNum == 0 ? count : OPERAND_LENGTHS[commandNum];
+  }
+
+  /**
+   * Returns the bytes saved by a command compared to copying its bytes as they are.
+   * The header of the copy is not counted, as it is usually shared with neighbouring bytes.
+   *
+   * @param commandNum
+   *     the command number, see {@link CompressionAlgorithm#getCommandNum()}.
+   * @param count
+   *     the number of uncompressed bytes, i.e. the command length + 1.
+   * @return the bytes saved, which is negative if the command is larger than its input.
+   */
+  public static int getSavedBytes(final int commandNum, final int count) {
+    return count - getCommandSize(commandNum, count);
+  }
+}
@@ -0,0 +1,68 @@
+/*
+ * Copyright 2020-2020 the ALttPJ Team @ https://github.com/alttpj
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *          http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.github.alttpj.library.compress;
+
+/**
+ * A match found by {@link CompressionAlgorithm#match(byte[], int, int)}, encoded in a {@code long}, so finding
+ * and passing on a match allocates nothing.
+ *
+ * <p>The lower 32 bits hold the command length (the number of bytes consumed minus one), the upper 32 bits the
+ * offset of the source for command 4. {@link #NONE} means the command is not applicable.</p>
+ */
+public final class CompressionMatch {
+
+  /**
+   * No match: a command length of {@code 0}.
+   */
+  public static final long NONE = 0L;
+
+  private CompressionMatch() {
+    // util class.
+  }
+
+  /**
+   * Encodes a match without offset.
+   *
+   * @param commandLength
+   *     the number of bytes consumed minus one, {@code 0} if not applicable.
+   * @return the match.
+   */
+  public static long of(final int commandLength) {
+    return of(commandLength, 0);
+  }
+
+  /**
+   * Encodes a match.
+   *
+   * @param commandLength
+   *     the number of bytes consumed minus one, {@code 0} if not applicable.
+   * @param offset
+   *     the absolute position of the source in the uncompressed data.
+   * @return the match.
+   */
+  public static long of(final int commandLength, final int offset) {
+    return (long) offset << 32 | commandLength & 0xFFFFFFFFL;
+  }
+
+  public static int getCommandLength(final long match) {
+    return (int) match;
+  }
+
+  public static int getOffset(final long match) {
+    return (int) (match >>> 32);
+  }
+}
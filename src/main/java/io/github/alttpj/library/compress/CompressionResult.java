@@ -16,33 +16,71 @@
 
 package io.github.alttpj.library.compress;
 
-import java.util.Comparator;
+import java.util.Arrays;
 import java.util.StringJoiner;
 
 public class CompressionResult implements Comparable<CompressionResult> {
 
-  private final byte[] input;
+  private final byte[] data;
+
+  private final int position;
+
+  private final int limit;
 
   private final CompressionAlgorithm algorithm;
 
+  private final long match;
+
   private final int commandLength;
 
   private final byte[] alreadyProcessed;
 
   public CompressionResult(final CompressionAlgorithm algorithm, final byte[] input, final byte[] alreadyProcessed) {
     this.algorithm = algorithm;
-    this.input = input;
+    this.data = Arrays.copyOf(alreadyProcessed, alreadyProcessed.length + input.length);
+    System.arraycopy(input, 0, this.data, alreadyProcessed.length, input.length);
+    this.position = alreadyProcessed.length;
+    this.limit = this.data.length;
     this.alreadyProcessed = alreadyProcessed;
 
-    this.commandLength = algorithm.brute(input, alreadyProcessed);
+    this.match = algorithm.match(this.data, this.position, this.limit);
+    this.commandLength = CompressionMatch.getCommandLength(this.match);
+  }
+
+  /**
+   * Evaluates the algorithm on {@code data[position..limit)}, using {@code data[0..position)} as history.
+   * The data is not copied, so it must not change before {@link #apply()} is called.
+   *
+   * @param algorithm
+   *     the algorithm to evaluate.
+   * @param data
+   *     the history followed by the input.
+   * @param position
+   *     the first byte to compress.
+   * @param limit
+   *     the end (exclusive) of the bytes available for compression.
+   */
+  public CompressionResult(final CompressionAlgorithm algorithm, final byte[] data, final int position, final int limit) {
+    this.algorithm = algorithm;
+    this.data = data;
+    this.position = position;
+    this.limit = limit;
+    this.alreadyProcessed = null;
+
+    this.match = algorithm.match(data, position, limit);
+    this.commandLength = CompressionMatch.getCommandLength(this.match);
   }
 
   public byte[] apply() {
-    return this.algorithm.apply(this.input, this.commandLength);
+    return this.algorithm.encode(this.data, this.position, this.match);
   }
 
   public byte[] getInput() {
-    return this.input;
+    if (this.position == 0 && this.limit == this.data.length) {
+      return this.data;
+    }
+
+    return Arrays.copyOfRange(this.data, this.position, this.limit);
   }
 
   public CompressionAlgorithm getAlgorithm() {
@@ -53,26 +91,52 @@ public class CompressionResult implements Comparable<CompressionResult> {
     return this.commandLength;
   }
 
+  /**
+   * Returns the bytes saved by this command compared to copying its input as is.
+   *
+   * @return the saved bytes, or {@code 0} if the algorithm is not applicable.
+   */
+  public int getSavedBytes() {
+    if (this.commandLength == 0) {
+      return 0;
+    }
+
+    return CompressionCosts.getSavedBytes(this.algorithm.getCommandNum(), this.commandLength + 1);
+  }
+
   public byte[] getAlreadyProcessed() {
-    return this.alreadyProcessed;
+    if (this.alreadyProcessed != null) {
+      return this.alreadyProcessed;
+    }
+
+    return Arrays.copyOf(this.data, this.position);
   }
 
   @Override
   public int compareTo(final CompressionResult other) {
-    // higher compressions (i.e. longer lengths) first
-    return Comparator.comparing(CompressionResult::getCommandLength, Comparator.reverseOrder())
-        // then sort by algo number ascending, because we can just use copy on equal results
-        .thenComparing(res -> res.getAlgorithm().getCommandNum())
-        .compare(this, other);
+    // most bytes saved first
+    final int bySavedBytes = Integer.compare(other.getSavedBytes(), getSavedBytes());
+    if (bySavedBytes != 0) {
+      return bySavedBytes;
+    }
+
+    // then higher compressions (i.e. longer lengths)
+    final int byLength = Integer.compare(other.commandLength, this.commandLength);
+    if (byLength != 0) {
+      return byLength;
+    }
+
+    // then sort by algo number ascending, because we can just use copy on equal results
+    return Integer.compare(this.algorithm.getCommandNum(), other.algorithm.getCommandNum());
   }
 
   @Override
   public String toString() {
     return new StringJoiner(", ", "CompressionResult{", "}")
-        .add("input=" + this.input.length)
+        .add("input=" + (this.limit - this.position))
         .add("algorithm=" + this.algorithm)
         .add("commandLength=" + this.commandLength)
-        .add("alreadyProcessed=" + this.alreadyProcessed.length)
+        .add("alreadyProcessed=" + (this.alreadyProcessed != null ? this.alreadyProcessed.length : this.position))
         .toString();
   }
 }
@@ -0,0 +1,183 @@
+/*
+ * Copyright 2020-2020 the ALttPJ Team @ https://github.com/alttpj
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *          http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.github.alttpj.library.compress;
+
+import io.github.alttpj.library.compress.impl.HashChainMatchFinder;
+
+import java.io.ByteArrayOutputStream;
+import java.util.Arrays;
+import java.util.StringJoiner;
+
+/**
+ * The buffers of a compression which can be reused for the next input: the match finder tables and the output.
+ *
+ * <p>Compressing a small block otherwise allocates far more for its match finder than for its data. An instance is
+ * not thread safe. Compressor instances keep their own, which they reuse after
+ * {@link SnesCompressor#reset(java.io.InputStream)}. Compressions into memory use the instance of their thread, so in
+ * steady state they only allocate their result. Compressions into a caller's stream do not, as the stream could start
+ * another compression on the same thread.</p>
+ *
+ * <p>As the threads of a pool live long, the instance of a thread is {@link #release() released} after each
+ * compression. It then keeps at most the match finder of the last level and an output of the initial size, and only
+ * if the input was small. About 80 KiB per thread stay allocated.</p>
+ */
+final class CompressionScratch {
+
+  /**
+   * Candidates compared by the match finder per position for {@link CompressionLevel#FAST}.
+   */
+  static final int FAST_MAX_CHAIN_LENGTH = 8;
+
+  /**
+   * Match length which ends the search for {@link CompressionLevel#OPTIMAL}, which looks up a match at every position.
+   * The parser extends long matches on its own, so this costs little ratio.
+   */
+  static final int OPTIMAL_NICE_LENGTH = 128;
+
+  private static final ThreadLocal<CompressionScratch> PER_THREAD = ThreadLocal.withInitial(CompressionScratch::new);
+
+  private static final int INITIAL_OUTPUT_SIZE = 2048;
+
+  /**
+   * Longest input whose match finder is kept by {@link #release()}. Larger inputs are rare, and the chain table of
+   * their match finder takes up to 256 KiB.
+   */
+  private static final int MAX_RETAINED_HISTORY = 0x1000;
+
+  private static final int FAST_MATCH_FINDER = 0;
+  private static final int DEFAULT_MATCH_FINDER = 1;
+  private static final int OPTIMAL_MATCH_FINDER = 2;
+
+  /**
+   * Created on first use, as compressor instances have their own output and most callers only use one level.
+   */
+  private Output output;
+
+  /**
+   * Indexed by the search settings, each created on first use. GREEDY and LAZY share one.
+   */
+  private final HashChainMatchFinder[] matchFinders = new HashChainMatchFinder[OPTIMAL_MATCH_FINDER + 1];
+
+  private int lastMatchFinder = -1;
+
+  /**
+   * Returns the scratch buffers of the current thread. They must not be kept beyond one compression, which must only
+   * write into memory and must {@link #release()} them when done.
+   *
+   * @return the buffers of the current thread.
+   */
+  static CompressionScratch forCurrentThread() {
+    return PER_THREAD.get();
+  }
+
+  /**
+   * Drops the buffers not worth keeping until the next compression: the output if it grew, every match finder but
+   * the last used one, and that one as well if its input was larger than {@value #MAX_RETAINED_HISTORY} bytes.
+   * The buffers returned before must not be used afterwards.
+   */
+  void release() {
+    if (this.output != null && this.output.capacity() > INITIAL_OUTPUT_SIZE) {
+      this.output = null;
+    }
+
+    for (int index = 0; index < this.matchFinders.length; index++) {
+      final HashChainMatchFinder matchFinder = this.matchFinders[index];
+      if (matchFinder != null
+          && (index != this.lastMatchFinder || matchFinder.getChainCapacity() > MAX_RETAINED_HISTORY)) {
+        this.matchFinders[index] = null;
+      }
+    }
+  }
+
+  /**
+   * Returns a reset match finder for the given level.
+   *
+   * @param compressionLevel
+   *     the level, which determines the chain length and the nice length.
+   * @return the match finder, with an empty history.
+   */
+  HashChainMatchFinder getMatchFinder(final CompressionLevel compressionLevel) {
+    final int index = indexOf(compressionLevel);
+    HashChainMatchFinder matchFinder = this.matchFinders[index];
+    if (matchFinder == null) {
+      matchFinder = createMatchFinder(index);
+      this.matchFinders[index] = matchFinder;
+    }
+    matchFinder.reset();
+    this.lastMatchFinder = index;
+
+    return matchFinder;
+  }
+
+  private static int indexOf(final CompressionLevel compressionLevel) {
+    switch (compressionLevel) {
+      case FAST:
+        return FAST_MATCH_FINDER;
+      case OPTIMAL:
+        return OPTIMAL_MATCH_FINDER;
+      default:
+        return DEFAULT_MATCH_FINDER;
+    }
+  }
+
+  private static HashChainMatchFinder createMatchFinder(final int index) {
+    switch (index) {
+      case FAST_MATCH_FINDER:
+        return new HashChainMatchFinder(FAST_MAX_CHAIN_LENGTH);
+      case OPTIMAL_MATCH_FINDER:
+        return new HashChainMatchFinder(HashChainMatchFinder.DEFAULT_MAX_CHAIN_LENGTH, OPTIMAL_NICE_LENGTH);
+      default:
+        return new HashChainMatchFinder();
+    }
+  }
+
+  /**
+   * Returns the output buffer, emptied.
+   *
+   * @return the output buffer, which keeps its capacity.
+   */
+  ByteArrayOutputStream getOutput() {
+    if (this.output == null) {
+      this.output = new Output();
+    }
+    this.output.reset();
+
+    return this.output;
+  }
+
+  @Override
+  public String toString() {
+    return new StringJoiner(", ", "CompressionScratch{", "}")
+        .add("output=" + (this.output == null ? 0 : this.output.size()))
+        .add("matchFinders=" + Arrays.toString(this.matchFinders))
+        .toString();
+  }
+
+  /**
+   * An output which tells its capacity, so a grown one is not kept.
+   */
+  private static final class Output extends ByteArrayOutputStream {
+
+    Output() {
+      super(INITIAL_OUTPUT_SIZE);
+    }
+
+    int capacity() {
+      return this.buf.length;
+    }
+  }
+}
@@ -0,0 +1,185 @@
+/*
+ * Copyright 2020-2020 the ALttPJ Team @ https://github.com/alttpj
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *          http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.github.alttpj.library.compress;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Arrays;
+import java.util.StringJoiner;
+
+/**
+ * Holds the already processed bytes (history) and the bytes read ahead from the input in one growable array.
+ *
+ * <p>{@code data[0..position)} is the history, {@code data[position..limit)} the lookahead.
+ * Algorithms read both directly from {@link #getData()}, so no bytes are copied per command.
+ * The array grows by doubling, so reading an input costs linear memory traffic.</p>
+ *
+ * <p>The input is either pulled from an {@link InputStream} using {@link #fill(int)} or pushed using
+ * {@link #append(byte[], int, int)}.</p>
+ */
+final class CompressionWindow {
+
+  private static final int INITIAL_CAPACITY = 4096;
+
+  private InputStream inputStream;
+
+  private byte[] data;
+
+  private int position;
+
+  private int limit;
+
+  private boolean endOfInput;
+
+  /**
+   * Creates a window which is filled by {@link #append(byte[], int, int)}.
+   */
+  CompressionWindow() {
+    this(null);
+  }
+
+  CompressionWindow(final InputStream inputStream) {
+    this.inputStream = inputStream;
+    this.endOfInput = inputStream == null;
+    this.data = new byte[INITIAL_CAPACITY];
+  }
+
+  /**
+   * Creates a window over the complete input {@code data[0..limit)}, which is read in place. Nothing may be appended,
+   * as the caller's array must not be written.
+   *
+   * @param data
+   *     the uncompressed input.
+   * @param limit
+   *     the end (exclusive) of the input.
+   */
+  CompressionWindow(final byte[] data, final int limit) {
+    this.inputStream = null;
+    this.endOfInput = true;
+    this.data = data;
+    this.limit = limit;
+  }
+
+  /**
+   * Empties the window for a new input, keeping the backing array.
+   *
+   * @param newInputStream
+   *     the new input.
+   */
+  void reset(final InputStream newInputStream) {
+    this.inputStream = newInputStream;
+    this.endOfInput = newInputStream == null;
+    this.position = 0;
+    this.limit = 0;
+  }
+
+  /**
+   * Adds bytes to the lookahead.
+   *
+   * @param buffer
+   *     the uncompressed bytes.
+   * @param offset
+   *     the first byte to add.
+   * @param length
+   *     the number of bytes to add.
+   */
+  void append(final byte[] buffer, final int offset, final int length) {
+    if (this.limit + length > this.data.length) {
+      this.data = Arrays.copyOf(this.data, Math.max(this.data.length * 2, this.limit + length));
+    }
+
+    System.arraycopy(buffer, offset, this.data, this.limit, length);
+    this.limit += length;
+  }
+
+  /**
+   * Reads from the input until at least {@code lookahead} bytes are available after the position or the input ends.
+   *
+   * @param lookahead
+   *     the number of bytes needed after the position.
+   * @return the number of bytes available after the position, which is {@code 0} at the end of the input.
+   * @throws IOException
+   *     error reading the input.
+   */
+  int fill(final int lookahead) throws IOException {
+    while (!this.endOfInput && available() < lookahead) {
+      if (this.limit == this.data.length) {
+        this.data = Arrays.copyOf(this.data, this.data.length * 2);
+      }
+
+      final int read = this.inputStream.read(this.data, this.limit, this.data.length - this.limit);
+      if (read == -1) {
+        this.endOfInput = true;
+      } else {
+        this.limit += read;
+      }
+    }
+
+    return available();
+  }
+
+  /**
+   * Moves {@code count} bytes from the lookahead into the history.
+   *
+   * @param count
+   *     the number of bytes processed.
+   */
+  void advance(final int count) {
+    final int available = available();
+    if (count > available) {
+      throw new IllegalArgumentException("Cannot advance [" + count + "] bytes, only [" + available + "] are available.");
+    }
+
+    this.position += count;
+  }
+
+  /**
+   * Returns the backing array. It is replaced when the window grows, so it must not be kept across {@link #fill(int)}.
+   *
+   * @return the backing array.
+   */
+  byte[] getData() {
+    return this.data;
+  }
+
+  /**
+   * Returns the number of bytes in the lookahead.
+   *
+   * @return the number of bytes after the position.
+   */
+  int available() {
+    return this.limit - this.position;
+  }
+
+  int getPosition() {
+    return this.position;
+  }
+
+  int getLimit() {
+    return this.limit;
+  }
+
+  @Override
+  public String toString() {
+    return new StringJoiner(", ", "CompressionWindow{", "}")
+        .add("capacity=" + this.data.length)
+        .add("position=" + this.position)
+        .add("limit=" + this.limit)
+        .add("endOfInput=" + this.endOfInput)
+        .toString();
+  }
+}
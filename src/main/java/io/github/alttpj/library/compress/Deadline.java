@@ -0,0 +1,83 @@
+/*
+ * Copyright 2020-2020 the ALttPJ Team @ https://github.com/alttpj
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *          http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.github.alttpj.library.compress;
+
+import java.io.InterruptedIOException;
+import java.time.Duration;
+import java.util.StringJoiner;
+
+/**
+ * A point in time by which a compression must be done, checked cooperatively by the encoders.
+ *
+ * <p>Reading the clock costs more than a step of the greedy encoders, so it is only read on every 256th check.
+ * An instance is not thread safe, except {@link #NONE}, which never reads the clock.</p>
+ */
+final class Deadline {
+
+  static final Deadline NONE = new Deadline(0L, false);
+
+  private static final int CHECK_INTERVAL_MASK = 0xFF;
+
+  /**
+   * End in {@link System#nanoTime()}.
+   */
+  private final long end;
+
+  private final boolean limited;
+
+  private int checks;
+
+  private Deadline(final long end, final boolean limited) {
+    this.end = end;
+    this.limited = limited;
+  }
+
+  /**
+   * Creates a deadline which is reached after the given time.
+   *
+   * @param timeLimit
+   *     the time from now.
+   * @return the deadline.
+   */
+  static Deadline after(final Duration timeLimit) {
+    return new Deadline(System.nanoTime() + timeLimit.toNanos(), true);
+  }
+
+  /**
+   * Fails if the deadline was reached. Cheap enough to be called once per position.
+   *
+   * @throws InterruptedIOException
+   *     if the deadline was reached, like a socket timeout.
+   */
+  void check() throws InterruptedIOException {
+    if (this.limited && (this.checks++ & CHECK_INTERVAL_MASK) == 0 && isReached()) {
+      throw new InterruptedIOException("Compression did not finish within the time limit.");
+    }
+  }
+
+  boolean isReached() {
+    return this.limited && System.nanoTime() - this.end >= 0;
+  }
+
+  @Override
+  public String toString() {
+    return new StringJoiner(", ", "Deadline{", "}")
+        .add("limited=" + this.limited)
+        .add("remainingNanos=" + (this.limited ? this.end - System.nanoTime() : Long.MAX_VALUE))
+        .toString();
+  }
+}
@@ -0,0 +1,302 @@
+/*
+ * Copyright 2020-2020 the ALttPJ Team @ https://github.com/alttpj
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *          http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.github.alttpj.library.compress;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Objects;
+import java.util.StringJoiner;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+
+/**
+ * A thread-safe cache of decompressed blocks, keyed by the source and the offset of the compressed block.
+ *
+ * <p>The cache is bounded by the total number of decompressed bytes and evicts the least recently used blocks
+ * first. Concurrent requests for a block which is not cached yet load it only once: the first caller runs the
+ * loader, the others wait for its result. The loaders run outside of the lock of the cache, so blocks with
+ * different keys are decompressed in parallel.</p>
+ *
+ * <p>Blocks are small and a lookup is cheap compared to decompressing, so a single lock guards the entries.</p>
+ */
+public final class DecompressedBlockCache {
+
+  private final long maximumWeight;
+
+  /**
+   * Entries in access order, the least recently used first.
+   */
+  private final Map<Key, byte[]> entries = new LinkedHashMap<>(16, 0.75f, true);
+
+  private final Map<Key, CompletableFuture<byte[]>> loading = new LinkedHashMap<>();
+
+  private long weight;
+
+  private long hitCount;
+
+  private long missCount;
+
+  private long evictionCount;
+
+  /**
+   * Creates an empty cache.
+   *
+   * @param maximumWeight
+   *     the maximum number of decompressed bytes to keep.
+   * @throws IllegalArgumentException
+   *     if {@code maximumWeight} is negative.
+   */
+  public DecompressedBlockCache(final long maximumWeight) {
+    if (maximumWeight < 0) {
+      throw new IllegalArgumentException("Maximum weight must not be negative, but was [" + maximumWeight + "].");
+    }
+
+    this.maximumWeight = maximumWeight;
+  }
+
+  /**
+   * Returns the decompressed block, loading it if it is not cached.
+   *
+   * @param source
+   *     identifies the source, e.g. the path or the checksum of the ROM. Compared using {@link Object#equals(Object)}.
+   * @param offset
+   *     the offset of the compressed block in the source.
+   * @param loader
+   *     decompresses the block if it is not cached.
+   * @return a copy of the decompressed block.
+   * @throws IOException
+   *     if the loader failed, also when waiting for another caller's load. Failed loads are not cached.
+   */
+  public byte[] get(final Object source, final long offset, final BlockLoader loader) throws IOException {
+    final Key key = new Key(source, offset);
+    final CompletableFuture<byte[]> pending;
+    final boolean loadHere;
+
+    synchronized (this) {
+      final byte[] cached = this.entries.get(key);
+      if (cached != null) {
+        this.hitCount++;
+        return cached.clone();
+      }
+
+      final CompletableFuture<byte[]> running = this.loading.get(key);
+      loadHere = running == null;
+      if (loadHere) {
+        pending = new CompletableFuture<>();
+        this.loading.put(key, pending);
+        this.missCount++;
+      } else {
+        pending = running;
+        this.hitCount++;
+      }
+    }
+
+    if (loadHere) {
+      return load(key, loader, pending).clone();
+    }
+
+    return await(pending).clone();
+  }
+
+  private byte[] load(final Key key, final BlockLoader loader, final CompletableFuture<byte[]> pending) throws IOException {
+    final byte[] block;
+    try {
+      block = Objects.requireNonNull(loader.load(), "loaded block");
+    } catch (final IOException | RuntimeException | Error loadException) {
+      synchronized (this) {
+        this.loading.remove(key, pending);
+      }
+      pending.completeExceptionally(loadException);
+      throw loadException;
+    }
+
+    synchronized (this) {
+      // not loading any more if the block was invalidated meanwhile, so the block may be stale.
+      final boolean current = this.loading.remove(key, pending);
+      if (current && block.length <= this.maximumWeight) {
+        this.entries.put(key, block);
+        this.weight += block.length;
+        evict();
+      }
+    }
+    pending.complete(block);
+
+    return block;
+  }
+
+  private static byte[] await(final CompletableFuture<byte[]> pending) throws IOException {
+    try {
+      return pending.get();
+    } catch (final InterruptedException interruptedException) {
+      Thread.currentThread().interrupt();
+      throw new InterruptedIOException("Interrupted while waiting for the block to be loaded.");
+    } catch (final ExecutionException executionException) {
+      final Throwable cause = executionException.getCause();
+      if (cause instanceof IOException) {
+        throw (IOException) cause;
+      }
+      if (cause instanceof RuntimeException) {
+        throw (RuntimeException) cause;
+      }
+
+      throw (Error) cause;
+    }
+  }
+
+  private void evict() {
+    final Iterator<byte[]> leastRecentlyUsed = this.entries.values().iterator();
+    while (this.weight > this.maximumWeight) {
+      this.weight -= leastRecentlyUsed.next().length;
+      leastRecentlyUsed.remove();
+      this.evictionCount++;
+    }
+  }
+
+  /**
+   * Removes a block from the cache. A load in progress is not cached when it completes, and later requests load the
+   * block again. Callers already waiting for that load still receive its result.
+   *
+   * @param source
+   *     identifies the source.
+   * @param offset
+   *     the offset of the compressed block in the source.
+   */
+  public synchronized void invalidate(final Object source, final long offset) {
+    final Key key = new Key(source, offset);
+    this.loading.remove(key);
+    final byte[] removed = this.entries.remove(key);
+    if (removed != null) {
+      this.weight -= removed.length;
+    }
+  }
+
+  /**
+   * Removes all blocks from the cache, e.g. after the ROM was changed. Loads in progress are treated as by
+   * {@link #invalidate(Object, long)}. The counters are kept.
+   */
+  public synchronized void invalidateAll() {
+    this.loading.clear();
+    this.entries.clear();
+    this.weight = 0L;
+  }
+
+  public long getMaximumWeight() {
+    return this.maximumWeight;
+  }
+
+  /**
+   * Returns the number of decompressed bytes held.
+   *
+   * @return the current weight.
+   */
+  public synchronized long getWeight() {
+    return this.weight;
+  }
+
+  public synchronized int size() {
+    return this.entries.size();
+  }
+
+  /**
+   * Returns the number of requests which did not run a loader, including those which waited for the load of
+   * another caller.
+   *
+   * @return the number of hits.
+   */
+  public synchronized long getHitCount() {
+    return this.hitCount;
+  }
+
+  /**
+   * Returns the number of requests which ran a loader.
+   *
+   * @return the number of misses.
+   */
+  public synchronized long getMissCount() {
+    return this.missCount;
+  }
+
+  /**
+   * Returns the number of blocks evicted to stay within the maximum weight. Invalidated blocks are not counted.
+   *
+   * @return the number of evictions.
+   */
+  public synchronized long getEvictionCount() {
+    return this.evictionCount;
+  }
+
+  @Override
+  public synchronized String toString() {
+    return new StringJoiner(", ", "DecompressedBlockCache{", "}")
+        .add("size=" + this.entries.size())
+        .add("weight=" + this.weight)
+        .add("maximumWeight=" + this.maximumWeight)
+        .add("hitCount=" + this.hitCount)
+        .add("missCount=" + this.missCount)
+        .add("evictionCount=" + this.evictionCount)
+        .toString();
+  }
+
+  /**
+   * Decompresses a block which is not cached.
+   */
+  @FunctionalInterface
+  public interface BlockLoader {
+
+    /**
+     * Decompresses the block.
+     *
+     * @return the decompressed bytes. The array is kept by the cache and must not be changed afterwards.
+     * @throws IOException
+     *     error reading or decompressing the block.
+     */
+    byte[] load() throws IOException;
+  }
+
+  private static final class Key {
+
+    private final Object source;
+
+    private final long offset;
+
+    Key(final Object source, final long offset) {
+      this.source = Objects.requireNonNull(source, "source");
+      this.offset = offset;
+    }
+
+    @Override
+    public boolean equals(final Object other) {
+      if (this == other) {
+        return true;
+      }
+      if (!(other instanceof Key)) {
+        return false;
+      }
+
+      final Key key = (Key) other;
+      return this.offset == key.offset && this.source.equals(key.source);
+    }
+
+    @Override
+    public int hashCode() {
+      return 31 * this.source.hashCode() + Long.hashCode(this.offset);
+    }
+  }
+}
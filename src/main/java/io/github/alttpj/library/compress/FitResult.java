@@ -0,0 +1,149 @@
+/*
+ * Copyright 2020-2020 the ALttPJ Team @ https://github.com/alttpj
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *          http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.github.alttpj.library.compress;
+
+import java.util.Arrays;
+import java.util.Objects;
+import java.util.StringJoiner;
+
+/**
+ * The outcome of {@link SnesCompressor#compressToFit(byte[], int, java.time.Duration)}: either the compressed data
+ * which fits into the budget, or why no level produced it.
+ */
+public final class FitResult {
+
+  private final Status status;
+
+  private final byte[] compressed;
+
+  private final CompressionLevel compressionLevel;
+
+  private final int size;
+
+  private final int budget;
+
+  private FitResult(final Status status, final byte[] compressed, final CompressionLevel compressionLevel, final int size,
+                    final int budget) {
+    this.status = status;
+    this.compressed = compressed;
+    this.compressionLevel = compressionLevel;
+    this.size = size;
+    this.budget = budget;
+  }
+
+  static FitResult fits(final byte[] compressed, final CompressionLevel compressionLevel, final int budget) {
+    return new FitResult(Status.FITS, compressed, Objects.requireNonNull(compressionLevel), compressed.length, budget);
+  }
+
+  static FitResult tooLarge(final CompressionLevel compressionLevel, final int smallestSize, final int budget) {
+    return new FitResult(Status.TOO_LARGE, null, compressionLevel, smallestSize, budget);
+  }
+
+  static FitResult timedOut(final CompressionLevel compressionLevel, final int smallestSize, final int budget) {
+    return new FitResult(Status.TIMED_OUT, null, compressionLevel, smallestSize, budget);
+  }
+
+  public Status getStatus() {
+    return this.status;
+  }
+
+  public boolean isFitting() {
+    return this.status == Status.FITS;
+  }
+
+  /**
+   * Returns the compressed data, including the end of stream marker.
+   *
+   * @return a copy of the compressed data.
+   * @throws IllegalStateException
+   *     if the input did not fit, with the reason as message.
+   */
+  public byte[] getCompressed() {
+    if (!isFitting()) {
+      throw new IllegalStateException(getReason());
+    }
+
+    return Arrays.copyOf(this.compressed, this.compressed.length);
+  }
+
+  /**
+   * Returns the level of the smallest size found: the level which fit, or the level which came closest.
+   *
+   * @return the level, or {@code null} if the time limit was reached before any level finished.
+   */
+  public CompressionLevel getCompressionLevel() {
+    return this.compressionLevel;
+  }
+
+  /**
+   * Returns the smallest compressed size found, including the end of stream marker.
+   *
+   * @return the size in bytes, or {@code -1} if the time limit was reached before any level finished.
+   */
+  public int getSize() {
+    return this.size;
+  }
+
+  public int getBudget() {
+    return this.budget;
+  }
+
+  private String getReason() {
+    switch (this.status) {
+      case TOO_LARGE:
+        return "Compressed size [" + this.size + "] with " + this.compressionLevel + " exceeds the budget of [" + this.budget + "] bytes.";
+      case TIMED_OUT:
+        return this.size == -1
+            ? "Time limit reached before any level finished."
+            : "Time limit reached after " + this.compressionLevel + ", smallest size [" + this.size + "] exceeds the budget of ["
+                + this.budget + "] bytes.";
+      default:
+        return "Compressed size [" + this.size + "] fits into the budget of [" + this.budget + "] bytes.";
+    }
+  }
+
+  @Override
+  public String toString() {
+    return new StringJoiner(", ", "FitResult{", "}")
+        .add("status=" + this.status)
+        .add("compressionLevel=" + this.compressionLevel)
+        .add("size=" + this.size)
+        .add("budget=" + this.budget)
+        .toString();
+  }
+
+  /**
+   * Whether the input fit into the budget.
+   */
+  public enum Status {
+
+    /**
+     * A level produced a compressed size within the budget.
+     */
+    FITS,
+
+    /**
+     * All levels are larger than the budget. The smallest size and its level are reported.
+     */
+    TOO_LARGE,
+
+    /**
+     * The time limit was reached before a level produced a compressed size within the budget.
+     */
+    TIMED_OUT
+  }
+}
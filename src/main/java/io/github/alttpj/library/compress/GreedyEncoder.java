@@ -0,0 +1,171 @@
+/*
+ * Copyright 2020-2020 the ALttPJ Team @ https://github.com/alttpj
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *          http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.github.alttpj.library.compress;
+
+import static io.github.alttpj.library.compress.CompressorConstants.COMMAND_LENGTH_MAX_EXTENDED;
+import static io.github.alttpj.library.compress.CompressorConstants.COMMAND_LENGTH_MAX_NORMAL;
+
+import io.github.alttpj.library.compress.impl.CopyExistingCompressionAlgorithm;
+import io.github.alttpj.library.compress.impl.HashChainMatchFinder;
+
+import java.io.IOException;
+import java.io.OutputStream;
+
+/**
+ * The encoder of {@link CompressionLevel#GREEDY}, which writes each command as soon as it is decided.
+ *
+ * <p>At each position the command saving the most bytes is taken. If there is none, the byte is copied, and so are the
+ * following bytes until one of them starts a command, but at most 31 at a time. A command starting within such a copy
+ * may not reach beyond it. Each step needs at most {@link #MAX_LOOKAHEAD} bytes of lookahead, so the input can be fed
+ * in pieces.</p>
+ */
+final class GreedyEncoder {
+
+  /**
+   * Lookahead needed for a step, unless the input has ended.
+   */
+  static final int MAX_LOOKAHEAD = COMMAND_LENGTH_MAX_EXTENDED + 1;
+
+  private static final int COPY_MAX_READ = COMMAND_LENGTH_MAX_NORMAL;
+
+  private static final int COMMAND_COPY = CompressionAlgorithms.READ_AS_IS.ordinal();
+
+  private static final int COMMAND_COPY_EXISTING = CompressionAlgorithms.COPY_EXISTING.ordinal();
+
+  private static final CompressionAlgorithm[] ALGORITHMS = CompressionAlgorithms.getSharedInstances();
+
+  private static final CopyExistingCompressionAlgorithm COPY_EXISTING =
+      (CopyExistingCompressionAlgorithm) ALGORITHMS[COMMAND_COPY_EXISTING];
+
+  /**
+   * History and lookahead of the input.
+   */
+  private final CompressionWindow window;
+
+  private final OutputStream output;
+
+  /**
+   * Indexes the history for command 4 across steps, so only newly processed bytes are indexed.
+   */
+  private final HashChainMatchFinder matchFinder;
+
+  /**
+   * First byte which is not written yet. The bytes up to the position of the window are copied as is.
+   */
+  private int literalStart;
+
+  /**
+   * End (exclusive) of the copy started at {@link #literalStart}, which is also the limit of the commands found within.
+   */
+  private int literalEnd;
+
+  /**
+   * Result of {@link #findBestCommand(byte[], int, int)}.
+   */
+  private int bestCommand;
+
+  private long bestMatch;
+
+  GreedyEncoder(final CompressionWindow window, final OutputStream output) {
+    this(window, output, new HashChainMatchFinder());
+  }
+
+  /**
+   * Creates an encoder for the input of the given window, starting at its position.
+   *
+   * @param window
+   *     the window the input is read from.
+   * @param output
+   *     receives the commands.
+   * @param matchFinder
+   *     a new or reset match finder, used by this encoder only until the input is compressed.
+   */
+  GreedyEncoder(final CompressionWindow window, final OutputStream output, final HashChainMatchFinder matchFinder) {
+    this.window = window;
+    this.output = output;
+    this.matchFinder = matchFinder;
+    this.literalStart = window.getPosition();
+  }
+
+  /**
+   * Decides on the byte at the position of the window, which is either copied or starts a command. The window must
+   * hold {@link #MAX_LOOKAHEAD} bytes after its position, or all remaining bytes of the input.
+   *
+   * @throws IOException
+   *     error writing the output.
+   */
+  void step() throws IOException {
+    final byte[] data = this.window.getData();
+    final int position = this.window.getPosition();
+    final boolean copying = position > this.literalStart;
+    if (!copying) {
+      this.literalEnd = position + Math.min(COPY_MAX_READ, this.window.getLimit() - position);
+    }
+    findBestCommand(data, position, copying ? this.literalEnd : Math.min(this.window.getLimit(), position + MAX_LOOKAHEAD));
+
+    if (this.bestCommand == COMMAND_COPY) {
+      this.window.advance(1);
+      if (position + 1 == this.literalEnd) {
+        writeCopy(data, position + 1);
+      }
+      return;
+    }
+
+    writeCopy(data, position);
+    this.output.write(ALGORITHMS[this.bestCommand].encode(data, position, this.bestMatch));
+    final int count = CompressionMatch.getCommandLength(this.bestMatch) + 1;
+    this.window.advance(count);
+    this.literalStart = position + count;
+  }
+
+  /**
+   * Evaluates all algorithms on {@code data[position..limit)} and keeps the one saving the most bytes in
+   * {@link #bestCommand} and {@link #bestMatch}. Nothing is allocated, the history is read in place.
+   */
+  private void findBestCommand(final byte[] data, final int position, final int limit) {
+    this.bestCommand = COMMAND_COPY;
+    this.bestMatch = CompressionMatch.NONE;
+    int bestCommandLength = 0;
+    int bestSavedBytes = 0;
+
+    // most bytes saved first, then longer lengths, then the lower command number. Commands saving nothing are copied.
+    for (int command = COMMAND_COPY + 1; command < ALGORITHMS.length; command++) {
+      final long match = command == COMMAND_COPY_EXISTING
+          ? COPY_EXISTING.match(data, position, limit, this.matchFinder)
+          : ALGORITHMS[command].match(data, position, limit);
+      final int commandLength = CompressionMatch.getCommandLength(match);
+      if (commandLength == 0) {
+        continue;
+      }
+
+      final int savedBytes = CompressionCosts.getSavedBytes(command, commandLength + 1);
+      if (savedBytes > bestSavedBytes || savedBytes == bestSavedBytes && commandLength > bestCommandLength && savedBytes > 0) {
+        this.bestCommand = command;
+        this.bestMatch = match;
+        bestCommandLength = commandLength;
+        bestSavedBytes = savedBytes;
+      }
+    }
+  }
+
+  private void writeCopy(final byte[] data, final int end) throws IOException {
+    if (end > this.literalStart) {
+      this.output.write(ALGORITHMS[COMMAND_COPY].encode(data, this.literalStart, CompressionMatch.of(end - this.literalStart - 1)));
+      this.literalStart = end;
+    }
+  }
+}
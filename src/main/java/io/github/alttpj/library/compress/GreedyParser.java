@@ -0,0 +1,189 @@
+/*
+ * Copyright 2020-2020 the ALttPJ Team @ https://github.com/alttpj
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *          http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.github.alttpj.library.compress;
+
+import static io.github.alttpj.library.compress.CompressorConstants.COMMAND_LENGTH_MAX_EXTENDED;
+
+import io.github.alttpj.library.compress.impl.CopyExistingCompressionAlgorithm;
+import io.github.alttpj.library.compress.impl.HashChainMatchFinder;
+
+import java.io.IOException;
+import java.io.OutputStream;
+
+/**
+ * Compresses a complete input in a single forward pass.
+ *
+ * <p>At each position the command of all {@link CompressionAlgorithms} saving the most bytes is taken. Bytes
+ * without any such command are collected and written as one copy command. In lazy mode, a command is only taken
+ * if the command starting at the next byte does not save more. Otherwise the byte is copied and the command found
+ * at the next byte becomes the candidate there, so each position is evaluated only once.</p>
+ */
+final class GreedyParser {
+
+  private static final int COMMAND_COPY = CompressionAlgorithms.READ_AS_IS.ordinal();
+
+  private static final int COMMAND_COPY_EXISTING = CompressionAlgorithms.COPY_EXISTING.ordinal();
+
+  private static final int MAX_COUNT_EXTENDED = COMMAND_LENGTH_MAX_EXTENDED + 1;
+
+  private static final CompressionAlgorithm[] ALGORITHMS = CompressionAlgorithms.getSharedInstances();
+
+  private static final CopyExistingCompressionAlgorithm COPY_EXISTING =
+      (CopyExistingCompressionAlgorithm) ALGORITHMS[COMMAND_COPY_EXISTING];
+
+  /**
+   * Indexes the input for command 4, which is the only state of a parse.
+   */
+  private final HashChainMatchFinder matchFinder;
+
+  private final boolean lazy;
+
+  private final byte[] input;
+
+  /**
+   * The first byte to compress. The bytes before are only used as source of command 4.
+   */
+  private final int start;
+
+  /**
+   * The end (exclusive) of the bytes to compress.
+   */
+  private final int length;
+
+  private Candidate current = new Candidate();
+
+  private Candidate next = new Candidate();
+
+  /**
+   * Creates a parser for {@code input[start..end)}, which may copy from all bytes before {@code end}.
+   *
+   * @param input
+   *     the uncompressed input.
+   * @param start
+   *     the first byte to compress.
+   * @param end
+   *     the end (exclusive) of the bytes to compress.
+   * @param matchFinder
+   *     a new or reset match finder, its chain length sets the effort of the search.
+   * @param lazy
+   *     whether to check the next position before taking a command.
+   */
+  GreedyParser(final byte[] input, final int start, final int end, final HashChainMatchFinder matchFinder, final boolean lazy) {
+    this.input = input;
+    this.start = start;
+    this.length = end;
+    this.lazy = lazy;
+    this.matchFinder = matchFinder;
+  }
+
+  void compress(final OutputStream output, final Deadline deadline) throws IOException {
+    int literalStart = this.start;
+    int position = this.start;
+    boolean evaluated = false;
+
+    while (position < this.length) {
+      deadline.check();
+      if (!evaluated) {
+        findBest(position, this.current);
+      }
+      evaluated = false;
+
+      if (this.current.command == COMMAND_COPY || isNextBetter(position)) {
+        if (this.current.command != COMMAND_COPY) {
+          // the lookahead already evaluated the next position.
+          final Candidate skipped = this.current;
+          this.current = this.next;
+          this.next = skipped;
+          evaluated = true;
+        }
+
+        position++;
+        if (position - literalStart == MAX_COUNT_EXTENDED) {
+          writeCopy(output, literalStart, position);
+          literalStart = position;
+        }
+        continue;
+      }
+
+      writeCopy(output, literalStart, position);
+      writeCommand(output, position, this.current);
+      position += this.current.count;
+      literalStart = position;
+    }
+
+    writeCopy(output, literalStart, position);
+  }
+
+  private boolean isNextBetter(final int position) {
+    if (!this.lazy || position + 1 >= this.length) {
+      return false;
+    }
+
+    findBest(position + 1, this.next);
+
+    return this.next.savedBytes > this.current.savedBytes;
+  }
+
+  private void findBest(final int position, final Candidate best) {
+    best.command = COMMAND_COPY;
+    best.count = 1;
+    best.savedBytes = 0;
+
+    // most bytes saved first, then longer lengths, then the lower command number. Commands saving nothing are copied.
+    for (int command = COMMAND_COPY + 1; command < ALGORITHMS.length; command++) {
+      final long match = command == COMMAND_COPY_EXISTING
+          ? COPY_EXISTING.match(this.input, position, this.length, this.matchFinder)
+          : ALGORITHMS[command].match(this.input, position, this.length);
+      if (match == CompressionMatch.NONE) {
+        continue;
+      }
+
+      final int count = CompressionMatch.getCommandLength(match) + 1;
+      final int savedBytes = CompressionCosts.getSavedBytes(command, count);
+      if (savedBytes > best.savedBytes || savedBytes == best.savedBytes && count > best.count && savedBytes > 0) {
+        best.command = command;
+        best.count = count;
+        best.savedBytes = savedBytes;
+        best.match = match;
+      }
+    }
+  }
+
+  private void writeCopy(final OutputStream output, final int start, final int end) throws IOException {
+    if (end > start) {
+      output.write(ALGORITHMS[COMMAND_COPY].encode(this.input, start, CompressionMatch.of(end - start - 1)));
+    }
+  }
+
+  private void writeCommand(final OutputStream output, final int position, final Candidate candidate) throws IOException {
+    output.write(ALGORITHMS[candidate.command].encode(this.input, position, candidate.match));
+  }
+
+  /**
+   * Best command found for a position.
+   */
+  private static final class Candidate {
+
+    private int command;
+
+    private int count;
+
+    private long match;
+
+    private int savedBytes;
+  }
+}
@@ -0,0 +1,277 @@
+/*
+ * Copyright 2020-2020 the ALttPJ Team @ https://github.com/alttpj
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *          http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.github.alttpj.library.compress;
+
+import static io.github.alttpj.library.compress.CompressorConstants.COMMAND_LENGTH_MAX_EXTENDED;
+import static io.github.alttpj.library.compress.CompressorConstants.COMMAND_LENGTH_MAX_NORMAL;
+
+import io.github.alttpj.library.compress.impl.CopyExistingCompressionAlgorithm;
+import io.github.alttpj.library.compress.impl.HashChainMatchFinder;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.io.OutputStream;
+
+/**
+ * Finds the encoding with the fewest bytes for a complete input.
+ *
+ * <p>The input is treated as a graph where each position is a node and each command starting at a
+ * position is an edge weighted by its encoded size. Going backwards, the cheapest encoding of each
+ * suffix is computed from the candidates of all {@link CompressionAlgorithms}.</p>
+ *
+ * <p>The cheapest suffix cost never increases with the position, so for a command with a maximum
+ * length only the longest normal (32 bytes) and the longest extended length need to be considered.
+ * Plain copies are evaluated for all lengths using sliding window minimums. The match finder compares at most 256
+ * candidates per position and stops at a match of 128 bytes, and inside longer matches no search is needed at all.
+ * So the parse is linear in the input length, but with a large constant on data with many short matches.</p>
+ */
+final class OptimalParser {
+
+  private static final int MAX_COUNT_NORMAL = COMMAND_LENGTH_MAX_NORMAL + 1;
+
+  private static final int MAX_COUNT_EXTENDED = COMMAND_LENGTH_MAX_EXTENDED + 1;
+
+  private static final int COMMAND_COPY = CompressionAlgorithms.READ_AS_IS.ordinal();
+
+  private static final int COMMAND_COPY_EXISTING = CompressionAlgorithms.COPY_EXISTING.ordinal();
+
+  private static final CompressionAlgorithm[] ALGORITHMS = CompressionAlgorithms.getSharedInstances();
+
+  private static final CopyExistingCompressionAlgorithm COPY_EXISTING =
+      (CopyExistingCompressionAlgorithm) ALGORITHMS[COMMAND_COPY_EXISTING];
+
+  private final HashChainMatchFinder matchFinder;
+
+  private final byte[] input;
+
+  /**
+   * The first byte to compress. The bytes before are only used as source of command 4.
+   */
+  private final int start;
+
+  /**
+   * The end (exclusive) of the bytes to compress.
+   */
+  private final int length;
+
+  private final int[] matchCount;
+
+  private final int[] matchOffset;
+
+  /**
+   * Cheapest encoding of {@code input[position..length)} in bytes. All arrays are indexed relative to {@link #start}.
+   */
+  private final int[] cost;
+
+  private final int[] chosenCommand;
+
+  private final int[] chosenCount;
+
+  OptimalParser(final byte[] input) {
+    this(input, 0, input.length,
+        new HashChainMatchFinder(HashChainMatchFinder.DEFAULT_MAX_CHAIN_LENGTH, CompressionScratch.OPTIMAL_NICE_LENGTH));
+  }
+
+  /**
+   * Creates a parser for {@code input[start..end)}, which may copy from all bytes before {@code end}.
+   *
+   * @param input
+   *     the uncompressed input.
+   * @param start
+   *     the first byte to compress.
+   * @param end
+   *     the end (exclusive) of the bytes to compress.
+   * @param matchFinder
+   *     a new or reset match finder.
+   */
+  OptimalParser(final byte[] input, final int start, final int end, final HashChainMatchFinder matchFinder) {
+    final int count = end - start;
+    this.matchFinder = matchFinder;
+    this.input = input;
+    this.start = start;
+    this.length = end;
+    this.matchCount = new int[count];
+    this.matchOffset = new int[count];
+    this.cost = new int[count + 1];
+    this.chosenCommand = new int[count];
+    this.chosenCount = new int[count];
+  }
+
+  void compress(final OutputStream output, final Deadline deadline) throws IOException {
+    findMatches(deadline);
+    computeCosts(deadline);
+    writeCommands(output);
+  }
+
+  /**
+   * The match finder only grows its history, so all matches are looked up in a forward pass first.
+   *
+   * <p>Inside a match longer than the nice length of the match finder, the match continues one byte later at the next
+   * position and is only extended at its end, instead of searching the chain for a longer one again.</p>
+   */
+  private void findMatches(final Deadline deadline) throws InterruptedIOException {
+    final int niceLength = this.matchFinder.getNiceLength();
+    int count = 0;
+    int offset = 0;
+    for (int position = this.start; position < this.length; position++) {
+      deadline.check();
+      if (count > niceLength && offset < HashChainMatchFinder.MAX_OFFSET) {
+        count--;
+        offset++;
+        // history and input share the array, so even beyond the history the source byte is input[offset + count].
+        final int maxCount = Math.min(this.length - position, HashChainMatchFinder.MAX_MATCH_LENGTH);
+        while (count < maxCount && this.input[offset + count] == this.input[position + count]) {
+          count++;
+        }
+      } else {
+        final long match = COPY_EXISTING.match(this.input, position, this.length, this.matchFinder);
+        count = match == CompressionMatch.NONE ? 0 : CompressionMatch.getCommandLength(match) + 1;
+        offset = CompressionMatch.getOffset(match);
+      }
+
+      this.matchCount[position - this.start] = count;
+      this.matchOffset[position - this.start] = offset;
+    }
+  }
+
+  private void computeCosts(final Deadline deadline) throws InterruptedIOException {
+    // literal costs are minimized over g(j) = cost[j] + j, once for the normal and once for the extended header.
+    final SlidingMinimum normalCopies = new SlidingMinimum(this.cost.length);
+    final SlidingMinimum extendedCopies = new SlidingMinimum(this.cost.length);
+
+    for (int position = this.length - 1; position >= this.start; position--) {
+      deadline.check();
+      normalCopies.add(position + 1, this.cost[position + 1 - this.start] + position + 1);
+      normalCopies.expireAbove(position + MAX_COUNT_NORMAL);
+      if (position + MAX_COUNT_NORMAL + 1 <= this.length) {
+        final int end = position + MAX_COUNT_NORMAL + 1;
+        extendedCopies.add(end, this.cost[end - this.start] + end);
+      }
+      extendedCopies.expireAbove(position + MAX_COUNT_EXTENDED);
+
+      this.cost[position - this.start] = Integer.MAX_VALUE;
+      evaluateCopy(position, normalCopies, 1);
+      evaluateCopy(position, extendedCopies, 2);
+
+      for (int command = COMMAND_COPY + 1; command < ALGORITHMS.length; command++) {
+        final int maxCount = getMaxCount(command, position);
+        if (maxCount == 0) {
+          continue;
+        }
+
+        evaluate(position, command, Math.min(maxCount, MAX_COUNT_NORMAL));
+        if (maxCount > MAX_COUNT_NORMAL) {
+          evaluate(position, command, maxCount);
+        }
+      }
+    }
+  }
+
+  private int getMaxCount(final int command, final int position) {
+    if (command == COMMAND_COPY_EXISTING) {
+      return this.matchCount[position - this.start];
+    }
+
+    final int commandLength = CompressionMatch.getCommandLength(ALGORITHMS[command].match(this.input, position, this.length));
+
+    return commandLength > 0 ? commandLength + 1 : 0;
+  }
+
+  private void evaluateCopy(final int position, final SlidingMinimum copies, final int headerLength) {
+    if (copies.isEmpty()) {
+      return;
+    }
+
+    final int end = copies.getMinimumIndex();
+    final int count = end - position;
+    final int index = position - this.start;
+    final int total = headerLength + count + this.cost[end - this.start];
+    if (total < this.cost[index]) {
+      this.cost[index] = total;
+      this.chosenCommand[index] = COMMAND_COPY;
+      this.chosenCount[index] = count;
+    }
+  }
+
+  private void evaluate(final int position, final int command, final int count) {
+    final int index = position - this.start;
+    final int total = CompressionCosts.getCommandSize(command, count) + this.cost[index + count];
+    if (total <= this.cost[index]) {
+      this.cost[index] = total;
+      this.chosenCommand[index] = command;
+      this.chosenCount[index] = count;
+    }
+  }
+
+  private void writeCommands(final OutputStream output) throws IOException {
+    int position = this.start;
+    while (position < this.length) {
+      final int index = position - this.start;
+      final int command = this.chosenCommand[index];
+      final int count = this.chosenCount[index];
+
+      final int offset = command == COMMAND_COPY_EXISTING ? this.matchOffset[index] : 0;
+      output.write(ALGORITHMS[command].encode(this.input, position, CompressionMatch.of(count - 1, offset)));
+
+      position += count;
+    }
+  }
+
+  /**
+   * Minimum of values over a window of indices which moves towards lower indices.
+   */
+  private static final class SlidingMinimum {
+
+    private final int[] indices;
+
+    private final int[] values;
+
+    private int head;
+
+    private int tail;
+
+    SlidingMinimum(final int capacity) {
+      this.indices = new int[capacity];
+      this.values = new int[capacity];
+    }
+
+    void add(final int index, final int value) {
+      // older entries which are not smaller will leave the window first and can never be the minimum.
+      while (this.tail > this.head && this.values[this.tail - 1] >= value) {
+        this.tail--;
+      }
+
+      this.indices[this.tail] = index;
+      this.values[this.tail] = value;
+      this.tail++;
+    }
+
+    void expireAbove(final int maxIndex) {
+      while (this.tail > this.head && this.indices[this.head] > maxIndex) {
+        this.head++;
+      }
+    }
+
+    boolean isEmpty() {
+      return this.head == this.tail;
+    }
+
+    int getMinimumIndex() {
+      return this.indices[this.head];
+    }
+  }
+}
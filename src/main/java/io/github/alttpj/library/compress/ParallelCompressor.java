@@ -0,0 +1,181 @@
+/*
+ * Copyright 2020-2020 the ALttPJ Team @ https://github.com/alttpj
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *          http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.github.alttpj.library.compress;
+
+import static io.github.alttpj.library.compress.CompressorConstants.COMMAND_LENGTH_MAX_EXTENDED;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+
+/**
+ * Compresses a single large input on several cores.
+ *
+ * <p>The input is split into segments which are compressed concurrently. Command 4 uses absolute offsets, so each
+ * segment may still copy from all bytes before it; only commands spanning a segment boundary are lost. At each
+ * boundary, a copy or a repeated byte ending one segment is merged with the same command starting the next one,
+ * if this saves bytes. The result is a regular compressed block, usually a few bytes larger than compressing
+ * the input in one piece.</p>
+ *
+ * <p>Segments are at least {@value #MIN_SEGMENT_LENGTH} bytes, so inputs below twice that size are compressed
+ * in one piece. Each segment indexes the bytes before it again, which costs little compared to the matching.</p>
+ */
+public final class ParallelCompressor {
+
+  /**
+   * Smallest segment worth a task of its own.
+   */
+  static final int MIN_SEGMENT_LENGTH = 8192;
+
+  private static final int COMMAND_COPY = CompressionAlgorithms.READ_AS_IS.ordinal();
+
+  private static final int COMMAND_REPEAT_BYTE = CompressionAlgorithms.REPEAT_BYTE.ordinal();
+
+  private static final int MAX_COUNT_EXTENDED = COMMAND_LENGTH_MAX_EXTENDED + 1;
+
+  private ParallelCompressor() {
+    // util class.
+  }
+
+  /**
+   * Compresses the input on the common fork-join pool.
+   *
+   * @param input
+   *     the uncompressed input. Must not be changed while compressing.
+   * @param compressionLevel
+   *     the level to compress each segment with.
+   * @return the compressed block, including the end of stream marker.
+   * @see #compress(byte[], CompressionLevel, ForkJoinPool)
+   */
+  public static byte[] compress(final byte[] input, final CompressionLevel compressionLevel) {
+    return compress(input, compressionLevel, ForkJoinPool.commonPool());
+  }
+
+  /**
+   * Compresses the input on the given pool, using one segment per thread of the pool.
+   *
+   * @param input
+   *     the uncompressed input. Must not be changed while compressing.
+   * @param compressionLevel
+   *     the level to compress each segment with.
+   * @param pool
+   *     the pool to compress the segments on.
+   * @return the compressed block, including the end of stream marker.
+   */
+  public static byte[] compress(final byte[] input, final CompressionLevel compressionLevel, final ForkJoinPool pool) {
+    final int segmentLength = Math.max(MIN_SEGMENT_LENGTH, (input.length + pool.getParallelism() - 1) / pool.getParallelism());
+
+    return compress(input, compressionLevel, pool, segmentLength);
+  }
+
+  static byte[] compress(final byte[] input, final CompressionLevel compressionLevel, final ForkJoinPool pool, final int segmentLength) {
+    final List<ForkJoinTask<byte[]>> segments = new ArrayList<>();
+    for (int start = 0; start < input.length || start == 0; start += segmentLength) {
+      final int segmentStart = start;
+      final int segmentEnd = Math.min(input.length, start + segmentLength);
+      segments.add(pool.submit(() -> compressSegment(input, segmentStart, segmentEnd, compressionLevel)));
+    }
+
+    final ByteArrayOutputStream output = new ByteArrayOutputStream(input.length / 2 + 16);
+    byte[] previous = segments.get(0).join();
+    for (int index = 1; index < segments.size(); index++) {
+      previous = stitch(input, index * segmentLength, previous, segments.get(index).join(), output);
+    }
+    output.write(previous, 0, previous.length);
+    output.write(CompressorConstants.ENF_OF_COMPRESSED_STREAM);
+
+    return output.toByteArray();
+  }
+
+  private static byte[] compressSegment(final byte[] input, final int start, final int end, final CompressionLevel compressionLevel) {
+    final CompressionScratch scratch = CompressionScratch.forCurrentThread();
+    try {
+      final ByteArrayOutputStream output = scratch.getOutput();
+      SnesCompressor.compressRange(input, start, end, compressionLevel, output, scratch);
+
+      return output.toByteArray();
+    } catch (final IOException ioException) {
+      // not thrown by a ByteArrayOutputStream.
+      throw new UncheckedIOException(ioException);
+    } finally {
+      scratch.release();
+    }
+  }
+
+  /**
+   * Writes all commands of {@code previous} but the last one to the {@code output}, and merges the last command with
+   * the first command of {@code next} if that saves bytes.
+   *
+   * @return the commands of the next segment still to be written, which may start with the merged command.
+   */
+  private static byte[] stitch(final byte[] input, final int boundary, final byte[] previous, final byte[] next,
+                               final ByteArrayOutputStream output) {
+    final int last = findLastCommand(previous);
+    final int lastEntry = CommandHeader.entry(previous[last] & 0xFF);
+    final int firstEntry = CommandHeader.entry(next[0] & 0xFF);
+    final int lastCommand = CommandHeader.commandOf(lastEntry);
+    final int lastCount = getCount(previous, last);
+    final int firstCount = getCount(next, 0);
+    final int count = lastCount + firstCount;
+
+    final boolean mergeable = lastCommand == CommandHeader.commandOf(firstEntry) && count <= MAX_COUNT_EXTENDED
+        && (lastCommand == COMMAND_COPY || lastCommand == COMMAND_REPEAT_BYTE && input[boundary - 1] == input[boundary]);
+    if (!mergeable || CompressionCosts.getCommandSize(lastCommand, count)
+        >= CompressionCosts.getCommandSize(lastCommand, lastCount) + CompressionCosts.getCommandSize(lastCommand, firstCount)) {
+      output.write(previous, 0, previous.length);
+      return next;
+    }
+
+    output.write(previous, 0, last);
+    final byte[] merged = CompressionAlgorithms.values()[lastCommand].getSharedInstance()
+        .encode(input, boundary - lastCount, CompressionMatch.of(count - 1));
+    final int firstLength = getCommandLength(next, 0);
+    final byte[] rest = new byte[merged.length + next.length - firstLength];
+    System.arraycopy(merged, 0, rest, 0, merged.length);
+    System.arraycopy(next, firstLength, rest, merged.length, next.length - firstLength);
+
+    return rest;
+  }
+
+  private static int findLastCommand(final byte[] commands) {
+    int last = 0;
+    for (int position = 0; position < commands.length; position += getCommandLength(commands, position)) {
+      last = position;
+    }
+
+    return last;
+  }
+
+  private static int getCount(final byte[] commands, final int position) {
+    final int entry = CommandHeader.entry(commands[position] & 0xFF);
+
+    return CommandHeader.isExtendedEntry(entry)
+        ? CommandHeader.baseLengthOf(entry) + (commands[position + 1] & 0xFF)
+        : CommandHeader.baseLengthOf(entry);
+  }
+
+  private static int getCommandLength(final byte[] commands, final int position) {
+    final int entry = CommandHeader.entry(commands[position] & 0xFF);
+    final int count = getCount(commands, position);
+
+    return CompressionCosts.getHeaderLength(count) + CompressionCosts.getOperandLength(CommandHeader.commandOf(entry), count);
+  }
+}
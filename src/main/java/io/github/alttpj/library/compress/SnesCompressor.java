@@ -16,177 +16,369 @@
 
 package io.github.alttpj.library.compress;
 
-import static io.github.alttpj.library.compress.CompressorConstants.COMMAND_LENGTH_MAX_EXTENDED;
-import static io.github.alttpj.library.compress.CompressorConstants.COMMAND_LENGTH_MAX_NORMAL;
-import static java.util.stream.Collectors.toCollection;
-
-import io.github.alttpj.library.compress.impl.CopyCompressAlgorithm;
+import io.github.alttpj.library.compress.impl.HashChainMatchFinder;
 
 import java.io.ByteArrayOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
-import java.io.PushbackInputStream;
-import java.util.Arrays;
-import java.util.NoSuchElementException;
-import java.util.Set;
-import java.util.TreeSet;
-import java.util.logging.Level;
-import java.util.logging.Logger;
+import java.io.InterruptedIOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.time.Duration;
+import java.util.Objects;
 
 public class SnesCompressor implements AutoCloseable {
 
-  private static final Logger LOG = Logger.getLogger(SnesCompressor.class.getCanonicalName());
-  private static final int COPY_MAX_READ = COMMAND_LENGTH_MAX_NORMAL;
+  /**
+   * History and lookahead of the input.
+   */
+  private final CompressionWindow window;
+
+  private final OutputStream output;
 
   /**
-   * Max gain is 48 when using extended header. +1 for the implicit +1.
+   * The output returned by {@link #getCompressed()}, {@code null} when writing to a caller's stream.
    */
-  private final PushbackInputStream inputStream;
+  private final ByteArrayOutputStream compressed;
 
-  private final ByteArrayOutputStream output;
+  private final CompressionLevel compressionLevel;
+
+  /**
+   * The match finder tables, kept across {@link #reset(InputStream)}.
+   */
+  private final CompressionScratch scratch = new CompressionScratch();
 
-  private final ByteArrayOutputStream alreadyProcessed = new ByteArrayOutputStream();
+  private InputStream inputStream;
 
   private boolean isCompressed;
 
   public SnesCompressor(final InputStream inputStream) {
-    this.inputStream = new PushbackInputStream(inputStream, COMMAND_LENGTH_MAX_EXTENDED + 1);
-    this.output = new ByteArrayOutputStream(2048);
+    this(inputStream, CompressionLevel.GREEDY);
   }
 
-  public ByteArrayOutputStream getCompressed() throws IOException {
-    ensureCompressed();
-    return this.output;
+  /**
+   * Creates a compressor which trades speed for compressed size as given by the {@code compressionLevel}.
+   *
+   * @param inputStream
+   *     the uncompressed input.
+   * @param compressionLevel
+   *     the effort to spend on finding a small encoding.
+   */
+  public SnesCompressor(final InputStream inputStream, final CompressionLevel compressionLevel) {
+    this(inputStream, new ByteArrayOutputStream(2048), compressionLevel);
   }
 
-  private void ensureCompressed() throws IOException {
-    if (!this.isCompressed) {
-      compressInput();
-    }
+  private SnesCompressor(final InputStream inputStream, final OutputStream output, final CompressionLevel compressionLevel) {
+    this.inputStream = Objects.requireNonNull(inputStream, "inputStream");
+    this.window = new CompressionWindow(inputStream);
+    this.output = Objects.requireNonNull(output, "output");
+    this.compressed = output instanceof ByteArrayOutputStream ? (ByteArrayOutputStream) output : null;
+    this.compressionLevel = Objects.requireNonNull(compressionLevel, "compressionLevel");
   }
 
-  private void compressInput() throws IOException {
-    final byte[] buffer = new byte[COMMAND_LENGTH_MAX_EXTENDED + 1];
-    int readCount;
-
-    while ((readCount = this.inputStream.read(buffer)) != -1) {
-      // find best gain from current position.
-      this.inputStream.unread(buffer, 0, readCount);
-      final byte[] readBytes = new byte[readCount];
-      System.arraycopy(buffer, 0, readBytes, 0, readCount);
-
-      final CompressionResult compressionResult = getBestCompressionAlgorithm(readBytes, this.alreadyProcessed.toByteArray());
-
-      if (compressionResult.getAlgorithm() instanceof CopyCompressAlgorithm) {
-        // if best gain is COPY, then iterate up to COMMAND_LENGTH_MAX_NORMAL +1 segments forward to find a better algorithm.
-        // this will help to determine the best size for the COPY.
-        tryChaining();
-        continue;
-      }
+  /**
+   * Compresses the {@code inputStream} into the {@code outputStream} with {@link CompressionLevel#GREEDY}.
+   *
+   * @param inputStream
+   *     the uncompressed input, read until its end.
+   * @param outputStream
+   *     receives the commands as soon as they are final, followed by the end of stream marker.
+   * @throws IOException
+   *     error reading the input or writing the output.
+   * @see #compress(InputStream, OutputStream, CompressionLevel)
+   */
+  public static void compress(final InputStream inputStream, final OutputStream outputStream) throws IOException {
+    compress(inputStream, outputStream, CompressionLevel.GREEDY);
+  }
 
-      // use better algorithm
-      final byte[] compressed = compressionResult.apply();
-      final int consumed = compressionResult.getCommandLength() + 1;
-      final byte[] processed = new byte[consumed];
-      final int read = this.inputStream.read(processed);
-      this.alreadyProcessed.write(processed, 0, read);
+  /**
+   * Compresses the {@code inputStream} into the {@code outputStream} without buffering the output.
+   * Neither stream is closed.
+   *
+   * <p>With {@link CompressionLevel#GREEDY}, each command is written as soon as it is decided. The other levels
+   * read the whole input before writing. In both cases, the input is held in memory, as each command may
+   * refer to any of the first 64 KiB of the uncompressed data.</p>
+   *
+   * @param inputStream
+   *     the uncompressed input, read until its end.
+   * @param outputStream
+   *     receives the commands, followed by the end of stream marker.
+   * @param compressionLevel
+   *     the effort to spend on finding a small encoding.
+   * @throws IOException
+   *     error reading the input or writing the output.
+   */
+  public static void compress(final InputStream inputStream, final OutputStream outputStream, final CompressionLevel compressionLevel)
+      throws IOException {
+    new SnesCompressor(inputStream, outputStream, compressionLevel).compressInput();
+  }
 
-      this.output.write(compressed);
+  /**
+   * Compresses a complete input held in memory with {@link CompressionLevel#GREEDY}.
+   *
+   * @param input
+   *     the uncompressed input, which is not modified.
+   * @return the compressed data, including the end of stream marker.
+   * @see #compress(byte[], CompressionLevel)
+   */
+  public static byte[] compress(final byte[] input) {
+    return compress(input, CompressionLevel.GREEDY);
+  }
+
+  /**
+   * Compresses a complete input held in memory.
+   *
+   * <p>The input is read in place, so unlike the stream based methods, it is neither copied nor read twice.</p>
+   *
+   * @param input
+   *     the uncompressed input, which is not modified.
+   * @param compressionLevel
+   *     the effort to spend on finding a small encoding.
+   * @return the compressed data, including the end of stream marker.
+   */
+  public static byte[] compress(final byte[] input, final CompressionLevel compressionLevel) {
+    Objects.requireNonNull(input, "input");
+    Objects.requireNonNull(compressionLevel, "compressionLevel");
+
+    final CompressionScratch scratch = CompressionScratch.forCurrentThread();
+    try {
+      final ByteArrayOutputStream output = scratch.getOutput();
+      compressRange(input, 0, input.length, compressionLevel, output, scratch);
+      output.write(CompressorConstants.ENF_OF_COMPRESSED_STREAM);
+
+      return output.toByteArray();
+    } catch (final IOException ioException) {
+      // not thrown by a ByteArrayOutputStream.
+      throw new UncheckedIOException(ioException);
+    } finally {
+      scratch.release();
     }
+  }
 
-    this.output.write(CompressorConstants.ENF_OF_COMPRESSED_STREAM);
+  /**
+   * Compresses the remaining bytes of the {@code input}, e.g. a region of a mapped ROM. The position of the buffer is
+   * not changed.
+   *
+   * <p>A heap buffer backed by a whole array is read in place. Other buffers are copied once, as the encoders
+   * index the input as an array.</p>
+   *
+   * @param input
+   *     the uncompressed input from its position to its limit.
+   * @param compressionLevel
+   *     the effort to spend on finding a small encoding.
+   * @return the compressed data, including the end of stream marker.
+   */
+  public static byte[] compress(final ByteBuffer input, final CompressionLevel compressionLevel) {
+    if (input.hasArray() && input.arrayOffset() + input.position() == 0 && input.remaining() == input.array().length) {
+      return compress(input.array(), compressionLevel);
+    }
 
-    this.isCompressed = true;
+    final byte[] copy = new byte[input.remaining()];
+    input.duplicate().get(copy);
+
+    return compress(copy, compressionLevel);
+  }
+
+  /**
+   * Returns the size {@link #compress(byte[], CompressionLevel)} would return, without building the compressed data.
+   * The parse is the same, so this takes about as long, but does not allocate the output.
+   *
+   * @param input
+   *     the uncompressed input, which is not modified.
+   * @param compressionLevel
+   *     the effort to spend on finding a small encoding.
+   * @return the compressed size in bytes, including the end of stream marker.
+   * @see #estimateCompressedSizeUpperBound(byte[])
+   */
+  public static int estimateCompressedSize(final byte[] input, final CompressionLevel compressionLevel) {
+    Objects.requireNonNull(input, "input");
+    Objects.requireNonNull(compressionLevel, "compressionLevel");
+
+    return CompressedSizeEstimator.getCompressedSize(input, compressionLevel);
   }
 
-  protected static CompressionResult getBestCompressionAlgorithm(final byte[] buffer, final byte[] alreadyProcessed) {
-    final Set<CompressionResult> algos = Arrays.stream(CompressionAlgorithms.values())
-        .map(CompressionAlgorithms::getCompressionAlgorithm)
-        .map(algo -> new CompressionResult(algo, buffer, alreadyProcessed))
-        .sorted()
-        .collect(toCollection(TreeSet::new));
-    return algos.stream()
-        .findFirst().orElseThrow(NoSuchElementException::new);
+  /**
+   * Quickly estimates the compressed size for planning, e.g. which blocks fit into a bank.
+   *
+   * <p>Only repeated, alternating and incrementing bytes are looked for, copies from earlier data (command 4)
+   * are not searched. The result is the size of a valid encoding, so it is never below the size with
+   * {@link CompressionLevel#OPTIMAL}. Inputs with repeated patterns longer than two bytes compress considerably
+   * better than estimated.</p>
+   *
+   * @param input
+   *     the uncompressed input, which is not modified.
+   * @return an upper bound of the compressed size in bytes, including the end of stream marker.
+   */
+  public static int estimateCompressedSizeUpperBound(final byte[] input) {
+    return CompressedSizeEstimator.getUpperBound(Objects.requireNonNull(input, "input"));
   }
 
-  private void tryChaining() throws IOException {
-    int readUncompressed;
-    CompressionResult chainedCompressionAlgo = null;
+  /**
+   * Compresses the {@code input} into at most {@code budget} bytes, e.g. the space of the data it replaces in the ROM.
+   *
+   * @param input
+   *     the uncompressed input, which is not modified.
+   * @param budget
+   *     the maximum compressed size in bytes, including the end of stream marker.
+   * @return the compressed data, or the smallest size found if it does not fit.
+   * @see #compressToFit(byte[], int, Duration)
+   */
+  public static FitResult compressToFit(final byte[] input, final int budget) {
+    return compressToFit(input, budget, Deadline.NONE);
+  }
 
-    final int maxRead = getMaxRead();
-    // figure out at which position another compression algorithm might be able to kick in.
-    for (readUncompressed = 1; readUncompressed < maxRead; readUncompressed++) {
-      final byte[] buffer = new byte[maxRead];
-      final int read = this.inputStream.read(buffer);
-      if (read == -1) {
-        return;
-      }
-      this.inputStream.unread(buffer, 0, read);
+  /**
+   * Compresses the {@code input} into at most {@code budget} bytes, spending no more than {@code timeLimit}.
+   *
+   * <p>The levels are tried from {@link CompressionLevel#FAST} to {@link CompressionLevel#OPTIMAL}, in the order of
+   * rising effort, and the first output which fits is returned. Inputs with room to spare thus take the time of a fast
+   * compression, and only tight budgets pay for the optimal parse. No level is skipped: the optimal parse bounds its
+   * match search, so it is not guaranteed to be smaller than every other level. If none fits, the smallest size of all
+   * levels is reported. The time limit is checked while parsing, so a build fails fast on a block which cannot fit
+   * instead of waiting for all levels.</p>
+   *
+   * @param input
+   *     the uncompressed input, which is not modified.
+   * @param budget
+   *     the maximum compressed size in bytes, including the end of stream marker.
+   * @param timeLimit
+   *     the time to spend on all levels together.
+   * @return the compressed data, or whether no level fit or the time limit was reached first.
+   */
+  public static FitResult compressToFit(final byte[] input, final int budget, final Duration timeLimit) {
+    return compressToFit(input, budget, Deadline.after(Objects.requireNonNull(timeLimit, "timeLimit")));
+  }
 
-      // try compression on this.
-      final int maxSizeNewBuffer = Math.min(Math.abs(read - readUncompressed), COMMAND_LENGTH_MAX_EXTENDED);
-      final byte[] newBuffer = new byte[maxSizeNewBuffer];
-      System.arraycopy(buffer, readUncompressed, newBuffer, 0, newBuffer.length);
+  private static FitResult compressToFit(final byte[] input, final int budget, final Deadline deadline) {
+    Objects.requireNonNull(input, "input");
+    if (budget < 1) {
+      throw new IllegalArgumentException("Budget [" + budget + "] must hold at least the end of stream marker.");
+    }
 
-      final ByteArrayOutputStream simulatedAlreadyCompressed = new ByteArrayOutputStream();
-      simulatedAlreadyCompressed.write(this.alreadyProcessed.toByteArray());
-      // now simulating writing n bytes
-      simulatedAlreadyCompressed.write(buffer, 0, readUncompressed);
+    final CompressionScratch scratch = CompressionScratch.forCurrentThread();
+    try {
+      return compressToFit(input, budget, deadline, scratch);
+    } finally {
+      scratch.release();
+    }
+  }
 
-      final CompressionResult bestCompressionAlgorithm = getBestCompressionAlgorithm(newBuffer, simulatedAlreadyCompressed.toByteArray());
-      if (!(bestCompressionAlgorithm.getAlgorithm() instanceof CopyCompressAlgorithm)) {
-        chainedCompressionAlgo = bestCompressionAlgorithm;
-        break;
+  private static FitResult compressToFit(final byte[] input, final int budget, final Deadline deadline,
+                                         final CompressionScratch scratch) {
+    CompressionLevel closestLevel = null;
+    int smallestSize = -1;
+    for (final CompressionLevel compressionLevel : CompressionLevel.values()) {
+      if (deadline.isReached()) {
+        return FitResult.timedOut(closestLevel, smallestSize, budget);
       }
-    }
 
-    LOG.log(Level.FINEST, "Not compressing next [" + readUncompressed + "] bytes.");
-    final byte[] processed = new byte[readUncompressed];
-    final int read1 = this.inputStream.read(processed);
-    final byte[] compressed = new CopyCompressAlgorithm().apply(processed, read1 - 1);
-    this.alreadyProcessed.write(processed, 0, readUncompressed);
-    this.output.write(compressed);
-
-    // did we actually find a chained algo?
-    if ((chainedCompressionAlgo == null) || (chainedCompressionAlgo.getAlgorithm() instanceof CopyCompressAlgorithm)) {
-      // no.
-      return;
+      final ByteArrayOutputStream output = scratch.getOutput();
+      try {
+        compressRange(input, 0, input.length, compressionLevel, output, scratch, deadline);
+      } catch (final InterruptedIOException timeout) {
+        return FitResult.timedOut(closestLevel, smallestSize, budget);
+      } catch (final IOException ioException) {
+        // not thrown by a ByteArrayOutputStream.
+        throw new UncheckedIOException(ioException);
+      }
+      output.write(CompressorConstants.ENF_OF_COMPRESSED_STREAM);
+
+      if (output.size() <= budget) {
+        return FitResult.fits(output.toByteArray(), compressionLevel, budget);
+      }
+      if (smallestSize == -1 || output.size() < smallestSize) {
+        closestLevel = compressionLevel;
+        smallestSize = output.size();
+      }
     }
 
-    doChainCompression(chainedCompressionAlgo);
+    return FitResult.tooLarge(closestLevel, smallestSize, budget);
   }
 
-  private void doChainCompression(final CompressionResult chainedCompressionAlgo) throws IOException {
-    final byte[] compressed;
-    final byte[] processed;
-    final int read1;
-    LOG.log(Level.FINEST, "Chaining compression [" + chainedCompressionAlgo + "].");
+  /**
+   * Prepares this compressor for the next input, keeping its buffers. Compressing many small blocks with one
+   * instance avoids allocating the match finder tables for each of them.
+   *
+   * <p>The previous input is not closed by this method. The output returned by {@link #getCompressed()} before is
+   * emptied, so its contents must be copied first.</p>
+   *
+   * @param newInputStream
+   *     the next uncompressed input.
+   */
+  public void reset(final InputStream newInputStream) {
+    this.inputStream = Objects.requireNonNull(newInputStream, "inputStream");
+    this.window.reset(newInputStream);
+    this.compressed.reset();
+    this.isCompressed = false;
+  }
 
-    compressed = chainedCompressionAlgo.apply();
-    processed = new byte[chainedCompressionAlgo.getCommandLength() + 1];
-    read1 = this.inputStream.read(processed);
-    if (read1 == -1) {
-      this.output.write(0xFF);
-      return;
+  public ByteArrayOutputStream getCompressed() throws IOException {
+    ensureCompressed();
+    return this.compressed;
+  }
+
+  private void ensureCompressed() throws IOException {
+    if (!this.isCompressed) {
+      compressInput();
     }
-    this.alreadyProcessed.write(processed, 0, read1);
-    this.output.write(compressed);
+  }
+
+  private void compressInput() throws IOException {
+    if (this.compressionLevel == CompressionLevel.GREEDY) {
+      compressInputGreedy();
+    } else {
+      // the window holds the whole input, which the parsers read in place.
+      this.window.fill(Integer.MAX_VALUE);
+      compressRange(this.window.getData(), 0, this.window.getLimit(), this.compressionLevel, this.output, this.scratch);
+    }
+
+    this.output.write(CompressorConstants.ENF_OF_COMPRESSED_STREAM);
+
+    this.isCompressed = true;
   }
 
   /**
-   * Returns the number of bytes how many can be read until EOF or 32 bits are read.
+   * Writes the commands for {@code input[start..end)}. Command 4 may copy from all bytes before {@code end},
+   * so the output continues the commands for {@code input[0..start)}. The end of stream marker is not written.
+   * The match finder is taken from the {@code scratch} buffers.
    */
-  private int getMaxRead() throws IOException {
-    final byte[] buffer = new byte[COMMAND_LENGTH_MAX_EXTENDED];
-    final int read = this.inputStream.read(buffer);
+  static void compressRange(final byte[] input, final int start, final int end, final CompressionLevel compressionLevel,
+                            final OutputStream output, final CompressionScratch scratch) throws IOException {
+    compressRange(input, start, end, compressionLevel, output, scratch, Deadline.NONE);
+  }
 
-    if (read == -1) {
-      return 0;
+  private static void compressRange(final byte[] input, final int start, final int end, final CompressionLevel compressionLevel,
+                                    final OutputStream output, final CompressionScratch scratch, final Deadline deadline)
+      throws IOException {
+    final HashChainMatchFinder matchFinder = scratch.getMatchFinder(compressionLevel);
+    switch (compressionLevel) {
+      case FAST:
+        new GreedyParser(input, start, end, matchFinder, false).compress(output, deadline);
+        break;
+      case LAZY:
+        new GreedyParser(input, start, end, matchFinder, true).compress(output, deadline);
+        break;
+      case OPTIMAL:
+        new OptimalParser(input, start, end, matchFinder).compress(output, deadline);
+        break;
+      default:
+        final CompressionWindow window = new CompressionWindow(input, end);
+        window.advance(start);
+        final GreedyEncoder encoder = new GreedyEncoder(window, output, matchFinder);
+        while (window.available() > 0) {
+          deadline.check();
+          encoder.step();
+        }
     }
+  }
 
-    this.inputStream.unread(buffer, 0, read);
+  private void compressInputGreedy() throws IOException {
+    final GreedyEncoder encoder = new GreedyEncoder(this.window, this.output, this.scratch.getMatchFinder(CompressionLevel.GREEDY));
 
-    return Math.min(COPY_MAX_READ, read);
+    while (this.window.fill(GreedyEncoder.MAX_LOOKAHEAD) > 0) {
+      encoder.step();
+    }
   }
 
   @Override
@@ -205,6 +397,6 @@ public class SnesCompressor implements AutoCloseable {
   protected int getOriginalLength() throws IOException {
     ensureCompressed();
 
-    return this.alreadyProcessed.size();
+    return this.window.getLimit();
   }
 }
@@ -0,0 +1,147 @@
+/*
+ * Copyright 2020-2020 the ALttPJ Team @ https://github.com/alttpj
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *          http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.github.alttpj.library.compress;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.Objects;
+
+/**
+ * Compresses the bytes written to it into the underlying stream.
+ *
+ * <p>With {@link CompressionLevel#GREEDY}, commands are written to the underlying stream as soon as they are
+ * final, which is once 1024 more bytes were written. The other levels compress on {@link #finish()}.
+ * Closing the stream writes the remaining commands and the end of stream marker.</p>
+ *
+ * <p>The uncompressed bytes are kept in memory, as each command may refer to any of the first 64 KiB of the
+ * uncompressed data.</p>
+ */
+public class SnesCompressorOutputStream extends OutputStream {
+
+  private final OutputStream outputStream;
+
+  private final CompressionLevel compressionLevel;
+
+  private final CompressionWindow window = new CompressionWindow();
+
+  /**
+   * Not shared with other compressions on this thread, as the underlying stream could start one while written to.
+   */
+  private final CompressionScratch scratch = new CompressionScratch();
+
+  /**
+   * Only used with {@link CompressionLevel#GREEDY}.
+   */
+  private final GreedyEncoder encoder;
+
+  private final byte[] singleByte = new byte[1];
+
+  private boolean finished;
+
+  public SnesCompressorOutputStream(final OutputStream outputStream) {
+    this(outputStream, CompressionLevel.GREEDY);
+  }
+
+  /**
+   * Creates a stream which compresses into the given {@code outputStream}.
+   *
+   * @param outputStream
+   *     receives the compressed data.
+   * @param compressionLevel
+   *     the effort to spend on finding a small encoding.
+   */
+  public SnesCompressorOutputStream(final OutputStream outputStream, final CompressionLevel compressionLevel) {
+    this.outputStream = Objects.requireNonNull(outputStream, "outputStream");
+    this.compressionLevel = Objects.requireNonNull(compressionLevel, "compressionLevel");
+    this.encoder = compressionLevel == CompressionLevel.GREEDY
+        ? new GreedyEncoder(this.window, outputStream, this.scratch.getMatchFinder(compressionLevel))
+        : null;
+  }
+
+  @Override
+  public void write(final int value) throws IOException {
+    this.singleByte[0] = (byte) value;
+    write(this.singleByte, 0, 1);
+  }
+
+  @Override
+  public void write(final byte[] buffer, final int offset, final int length) throws IOException {
+    if (offset < 0 || length < 0 || length > buffer.length - offset) {
+      throw new IndexOutOfBoundsException("Cannot write [" + length + "] bytes at [" + offset + "] from [" + buffer.length + "] bytes.");
+    }
+    ensureNotFinished();
+
+    this.window.append(buffer, offset, length);
+
+    if (this.encoder != null) {
+      while (this.window.available() >= GreedyEncoder.MAX_LOOKAHEAD) {
+        this.encoder.step();
+      }
+    }
+  }
+
+  /**
+   * Flushes the commands written so far. Commands which depend on bytes not yet written are kept back.
+   *
+   * @throws IOException
+   *     error flushing the underlying stream.
+   */
+  @Override
+  public void flush() throws IOException {
+    this.outputStream.flush();
+  }
+
+  /**
+   * Writes the remaining commands and the end of stream marker without closing the underlying stream.
+   * No more bytes can be written afterwards.
+   *
+   * @throws IOException
+   *     error writing to the underlying stream.
+   */
+  public void finish() throws IOException {
+    if (this.finished) {
+      return;
+    }
+
+    if (this.encoder != null) {
+      while (this.window.available() > 0) {
+        this.encoder.step();
+      }
+    } else {
+      SnesCompressor.compressRange(this.window.getData(), 0, this.window.getLimit(), this.compressionLevel, this.outputStream,
+          this.scratch);
+    }
+
+    this.outputStream.write(CompressorConstants.ENF_OF_COMPRESSED_STREAM);
+    this.finished = true;
+  }
+
+  @Override
+  public void close() throws IOException {
+    try {
+      finish();
+    } finally {
+      this.outputStream.close();
+    }
+  }
+
+  private void ensureNotFinished() throws IOException {
+    if (this.finished) {
+      throw new IOException("Stream already finished.");
+    }
+  }
+}
@@ -16,11 +16,16 @@
 
 package io.github.alttpj.library.compress;
 
-import java.io.ByteArrayOutputStream;
+import java.io.BufferedInputStream;
+import java.io.FilterInputStream;
 import java.io.IOException;
 import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
 import java.util.Arrays;
 import java.util.Locale;
+import java.util.Objects;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
@@ -28,17 +33,21 @@ public class SnesDecompressor implements AutoCloseable {
 
   private static final Logger LOG = Logger.getLogger(SnesDecompressor.class.getCanonicalName());
 
+  private static final int INITIAL_OUTPUT_SIZE = 4096;
+
   /**
-   * First half byte is the command.
+   * The source, counting the compressed bytes consumed.
    */
-  private static final int HEADER_MASK_COMMAND = 0b11100000;
+  private final CountingInputStream inputStream;
+
+  private final boolean closeInput;
 
   /**
-   * Second half is the length.
+   * Repositioned just after the block once it is read, as the input stream reads ahead.
    */
-  private static final int HEADER_MASK_LEN = 0b00011111;
+  private FileChannel channel;
 
-  private final InputStream inputStream;
+  private long compressedStart;
 
   /**
    * Indicates end of input stream.
@@ -46,17 +55,198 @@ public class SnesDecompressor implements AutoCloseable {
   private boolean eos;
 
   private boolean closed;
-  private final ByteArrayOutputStream decompressed = new ByteArrayOutputStream();
+
+  /**
+   * The decompressed bytes so far, read in place by command 4.
+   */
+  private byte[] decompressed = new byte[INITIAL_OUTPUT_SIZE];
+
+  private int decompressedLength;
 
   private boolean readFully;
 
   public SnesDecompressor(final InputStream inputStream) {
-    this.inputStream = inputStream;
+    this(inputStream, true);
+  }
+
+  /**
+   * Creates a decompressor which reads the block from the current position of the {@code inputStream}.
+   * The stream is read byte exact, so after decompressing, it is positioned just after the end of stream marker.
+   *
+   * @param inputStream
+   *     the compressed block.
+   * @param closeInput
+   *     whether to close the {@code inputStream} once the block was read. Use {@code false} to read
+   *     several blocks from one stream.
+   */
+  public SnesDecompressor(final InputStream inputStream, final boolean closeInput) {
+    this(inputStream, closeInput, null, 0L);
+  }
+
+  /**
+   * Creates a decompressor which reads the block from the current position of the {@code channel}.
+   * After decompressing, the channel is positioned just after the end of stream marker and is not closed,
+   * so ROM images can be walked block after block. {@link #getCompressedStart()} is the position in the channel.
+   *
+   * @param channel
+   *     the channel to read the compressed block from.
+   * @throws IOException
+   *     error reading the position of the channel.
+   */
+  public SnesDecompressor(final FileChannel channel) throws IOException {
+    this(new BufferedInputStream(Channels.newInputStream(channel)), false, channel, channel.position());
+  }
+
+  /**
+   * Creates a decompressor which reads the block from the position of the {@code buffer}. After decompressing,
+   * the buffer is positioned just after the end of stream marker. {@link #getCompressedStart()} is the position
+   * in the buffer.
+   *
+   * @param buffer
+   *     the buffer to read the compressed block from.
+   */
+  public SnesDecompressor(final ByteBuffer buffer) {
+    this(new ByteBufferInputStream(buffer), false, null, buffer.position());
+  }
+
+  private SnesDecompressor(final InputStream inputStream, final boolean closeInput, final FileChannel channel, final long compressedStart) {
+    this.inputStream = new CountingInputStream(inputStream);
+    this.closeInput = closeInput;
+    this.channel = channel;
+    this.compressedStart = compressedStart;
+  }
+
+  /**
+   * Decompresses one block from the {@code source} into the whole {@code destination}.
+   *
+   * @param source
+   *     the compressed block. Read up to and including the end of stream marker.
+   * @param destination
+   *     receives the decompressed bytes, starting at index 0.
+   * @return the number of decompressed bytes.
+   * @throws IOException
+   *     error reading the source, or the source is not a valid compressed block.
+   * @throws IllegalArgumentException
+   *     if the decompressed block does not fit into the destination.
+   * @throws UnsupportedOperationException
+   *     if the block contains an unknown command.
+   * @see #decompress(InputStream, byte[], int, int)
+   */
+  public static int decompress(final InputStream source, final byte[] destination) throws IOException {
+    return decompress(source, destination, 0, destination.length);
+  }
+
+  /**
+   * Decompresses one block from the {@code source} into a region of the {@code destination}.
+   *
+   * <p>Each command is written straight into the destination and command 4 copies within it, so a buffer can be
+   * reused for many blocks without allocating per command. The offsets of command 4 are relative to {@code offset}.
+   * The source is not read beyond the end of stream marker and is not closed.</p>
+   *
+   * @param source
+   *     the compressed block. Read up to and including the end of stream marker.
+   * @param destination
+   *     receives the decompressed bytes.
+   * @param offset
+   *     the index of the first decompressed byte in {@code destination}.
+   * @param length
+   *     the maximum number of bytes to write.
+   * @return the number of decompressed bytes.
+   * @throws IOException
+   *     error reading the source, or the source is not a valid compressed block.
+   * @throws IllegalArgumentException
+   *     if the decompressed block is longer than {@code length}. The destination then holds the commands decoded so far.
+   * @throws UnsupportedOperationException
+   *     if the block contains an unknown command.
+   */
+  public static int decompress(final InputStream source, final byte[] destination, final int offset, final int length)
+      throws IOException {
+    return new ArrayDecompressor(source, destination, offset, length).decompress();
+  }
+
+  /**
+   * Decompresses one block from the remaining bytes of {@code source} into the remaining bytes of {@code destination}.
+   * On success, the position of the {@code source} is just after the end of stream marker and the position of the
+   * {@code destination} is just after the last decompressed byte.
+   *
+   * @param source
+   *     the compressed block.
+   * @param destination
+   *     receives the decompressed bytes. Must be backed by an accessible array, as command 4 copies within it.
+   * @return the number of decompressed bytes.
+   * @throws IOException
+   *     the source is not a valid compressed block.
+   * @throws IllegalArgumentException
+   *     if the decompressed block does not fit into the remaining bytes of the destination,
+   *     or if the destination is direct or read only.
+   * @throws UnsupportedOperationException
+   *     if the block contains an unknown command.
+   */
+  public static int decompress(final ByteBuffer source, final ByteBuffer destination) throws IOException {
+    if (!destination.hasArray()) {
+      throw new IllegalArgumentException("Destination must be a writable heap buffer, but was [" + destination + "].");
+    }
+
+    final int written = decompress(new ByteBufferInputStream(source), destination.array(),
+        destination.arrayOffset() + destination.position(), destination.remaining());
+    destination.position(destination.position() + written);
+
+    return written;
+  }
+
+  /**
+   * Prepares this decompressor for the next block, read from the current position of the {@code inputStream}.
+   * The buffers are kept, so decompressing many small blocks with one instance does not allocate them for each block.
+   *
+   * <p>The previous input is not closed by this method. The new input is closed after its block
+   * if this decompressor was created to close its input.</p>
+   *
+   * @param inputStream
+   *     the next compressed block.
+   */
+  public void reset(final InputStream inputStream) {
+    this.inputStream.restart(Objects.requireNonNull(inputStream, "inputStream"));
+    this.channel = null;
+    this.compressedStart = 0L;
+    this.eos = false;
+    this.closed = false;
+    this.decompressedLength = 0;
+    this.readFully = false;
   }
 
   public byte[] getDecompressed() {
     ensureReadFully();
-    return this.decompressed.toByteArray();
+    return Arrays.copyOf(this.decompressed, this.decompressedLength);
+  }
+
+  /**
+   * Returns the position of the first compressed byte, i.e. the position in the channel or buffer this
+   * decompressor was created with, or {@code 0} for an input stream.
+   *
+   * @return the start of the compressed block.
+   */
+  public long getCompressedStart() {
+    return this.compressedStart;
+  }
+
+  /**
+   * Returns the position just after the end of stream marker, i.e. the start of the next block.
+   *
+   * @return the end (exclusive) of the compressed block.
+   */
+  public long getCompressedEnd() {
+    return this.compressedStart + getCompressedLength();
+  }
+
+  /**
+   * Returns the number of compressed bytes consumed, including the end of stream marker.
+   * The block is decompressed first, if not done yet.
+   *
+   * @return the length of the compressed block.
+   */
+  public long getCompressedLength() {
+    ensureReadFully();
+    return this.inputStream.count;
   }
 
   /**
@@ -83,22 +273,18 @@ public class SnesDecompressor implements AutoCloseable {
 
     final int header = read();
 
-    if ((header & 0xFF) == 0xFF) {
+    if ((header & 0xFF) == CommandHeader.END_OF_STREAM) {
       this.eos = true;
       this.readFully = true;
       return null;
     }
 
-    final int command = (header & HEADER_MASK_COMMAND) >> 5;
-    // always use one more byte.
-    // note: overwrite this if command is 0b0111! Then this is the actual command!
-    final int compressionLength = (header & HEADER_MASK_LEN) + 1;
-
-    if ((header & HEADER_MASK_COMMAND) == HEADER_MASK_COMMAND) {
+    final int entry = CommandHeader.entry(header & 0xFF);
+    if (CommandHeader.isExtendedEntry(entry)) {
       return readExtensionCommand(header);
     }
 
-    return evaluateCommand(command, compressionLength);
+    return evaluateCommand(CommandHeader.commandOf(entry), CommandHeader.baseLengthOf(entry));
   }
 
   private byte[] evaluateCommand(final int command, final int compressionLength) throws IOException {
@@ -112,7 +298,7 @@ public class SnesDecompressor implements AutoCloseable {
       case 3:
         return readCommand3IncreaseByte(compressionLength);
       case 4:
-        return readCommand4CopyExisting(compressionLength, this.decompressed.toByteArray(), this.inputStream);
+        return readCommand4CopyExisting(compressionLength);
       default:
         final String commandStr = toBinaryString((byte) (command & 0xFF));
         throw new UnsupportedOperationException("Unknown command: [" + commandStr + "].");
@@ -186,50 +372,72 @@ public class SnesDecompressor implements AutoCloseable {
    */
   public static byte[] readCommand4CopyExisting(final int compressionLength, final byte[] currentOutputBuffer, final InputStream is)
       throws IOException {
+    return copyExisting(compressionLength, currentOutputBuffer, currentOutputBuffer.length, is);
+  }
+
+  private byte[] readCommand4CopyExisting(final int compressionLength) throws IOException {
+    return copyExisting(compressionLength, this.decompressed, this.decompressedLength, this.inputStream);
+  }
+
+  private static byte[] copyExisting(final int compressionLength, final byte[] currentOutputBuffer, final int lengthOutputBuffer,
+                                     final InputStream is) throws IOException {
     // Command 4
     // A and B form an offset into the current output buffer (the bytes that have already been decompressed and copied to the output)
     // let this offset be X
     // X = A | ( B << 8 )
     // (length parameter + 1) bytes are copied from within the current output buffer and appended to the end of the current output buffer
-    final int lengthOutputBuffer = currentOutputBuffer.length;
-
     final byte a = (byte) (is.read() & 0xFF);
     final byte b = (byte) (is.read() & 0xFF);
     final int offset = ((a & 0xff)) | ((b & 0xff) << 8);
 
-    if (offset > lengthOutputBuffer) {
+    if (offset >= lengthOutputBuffer) {
       LOG.log(Level.SEVERE, "Unable to read. Algo wrong. Offset [" + offset + "], Length Output: [" + lengthOutputBuffer + "].");
       LOG.log(Level.SEVERE, "a = [" + toBinaryString(a) + "], b = [" + toBinaryString(b) + "].");
+      throw new IllegalStateException("Offset [" + offset + "] points beyond the [" + lengthOutputBuffer + "] decompressed bytes.");
     }
 
-    // read as ring buffer
-    if (offset + compressionLength > lengthOutputBuffer) {
-      final byte[] out = new byte[compressionLength];
-      int read = 0;
-      int pos = offset;
-
-      while (read < compressionLength) {
-        out[read] = currentOutputBuffer[pos];
-        read++;
-        pos++;
-        if (pos >= lengthOutputBuffer) {
-          // back to start
-          pos = offset;
-        }
-      }
+    // read as ring buffer if the length exceeds the output.
+    final byte[] out = new byte[compressionLength];
+    copyRepeated(currentOutputBuffer, offset, lengthOutputBuffer - offset, out, 0, compressionLength);
 
-      return out;
-    }
+    return out;
+  }
 
-    return Arrays.copyOfRange(currentOutputBuffer, offset, offset + compressionLength);
+  /**
+   * Fills {@code target[targetPosition..targetPosition+length)} with {@code source[sourcePosition..sourcePosition+sourceLength)},
+   * repeated as often as needed. Repetitions are copied from the target in doubling chunks, so an overlapping copy of a
+   * short pattern takes a logarithmic number of {@link System#arraycopy(Object, int, Object, int, int)} calls.
+   * The source may be in the target, as long as it ends at or before {@code targetPosition}.
+   *
+   * @param source
+   *     the array holding the pattern.
+   * @param sourcePosition
+   *     the start of the pattern.
+   * @param sourceLength
+   *     the length of the pattern.
+   * @param target
+   *     the array to fill.
+   * @param targetPosition
+   *     the first byte to fill.
+   * @param length
+   *     the number of bytes to fill.
+   */
+  static void copyRepeated(final byte[] source, final int sourcePosition, final int sourceLength,
+                           final byte[] target, final int targetPosition, final int length) {
+    int copied = Math.min(sourceLength, length);
+    System.arraycopy(source, sourcePosition, target, targetPosition, copied);
+
+    while (copied < length) {
+      final int chunk = Math.min(copied, length - copied);
+      System.arraycopy(target, targetPosition, target, targetPosition + copied, chunk);
+      copied += chunk;
+    }
   }
 
   protected byte[] readExtensionCommand(final int header) throws IOException {
-    final int command = (header & 0b00011100) >> 2;
     final int extensionByte = read();
-    final int compressionLength = (((header & 0b00000011) << 8) + extensionByte) + 1;
 
-    return evaluateCommand(command, compressionLength);
+    return evaluateCommand(CommandHeader.getCommand(header), CommandHeader.getExtendedLength(header, extensionByte));
   }
 
   protected void readNextCommand() {
@@ -237,10 +445,9 @@ public class SnesDecompressor implements AutoCloseable {
       final byte[] buffer;
 
       if ((buffer = inflateNextCommand()) != null) {
-        this.decompressed.write(buffer, 0, buffer.length);
+        append(buffer);
       } else {
-        this.readFully = true;
-        this.close();
+        endOfBlock();
       }
     } catch (final IOException ioEx) {
       throw new IllegalStateException("Unable to read.", ioEx);
@@ -249,30 +456,157 @@ public class SnesDecompressor implements AutoCloseable {
 
   private void readFully() {
     try {
-      byte[] buffer;
+      if (!this.eos) {
+        if (this.closeInput) {
+          // the source is closed after this block, so reading beyond it is not observable.
+          this.inputStream.readAhead();
+        }
 
-      while ((buffer = inflateNextCommand()) != null) {
-        this.decompressed.write(buffer, 0, buffer.length);
+        // decodes the remaining commands straight into the output instead of one array per command.
+        final ArrayDecompressor decompressor = new ArrayDecompressor(this.inputStream, this.decompressed, this.decompressedLength);
+        this.decompressedLength = decompressor.decompress();
+        this.decompressed = decompressor.getTarget();
       }
 
-      this.readFully = true;
-      this.close();
+      endOfBlock();
     } catch (final IOException ioEx) {
       throw new IllegalStateException("Unable to read.", ioEx);
     }
   }
 
+  private void endOfBlock() throws IOException {
+    this.readFully = true;
+
+    if (this.channel != null) {
+      this.channel.position(this.compressedStart + this.inputStream.count);
+    }
+
+    this.close();
+  }
+
+  private void append(final byte[] buffer) {
+    if (this.decompressedLength + buffer.length > this.decompressed.length) {
+      this.decompressed = Arrays.copyOf(this.decompressed, Math.max(this.decompressed.length * 2, this.decompressedLength + buffer.length));
+    }
+
+    System.arraycopy(buffer, 0, this.decompressed, this.decompressedLength, buffer.length);
+    this.decompressedLength += buffer.length;
+  }
+
   @Override
   public void close() throws IOException {
-    if (this.inputStream != null && !this.closed) {
+    if (!this.closed) {
       this.closed = true;
       this.eos = true;
-      this.inputStream.close();
+      if (this.closeInput && this.inputStream.isOpenable()) {
+        this.inputStream.close();
+      }
     }
   }
 
-  private static String toBinaryString(final byte command) {
+  static String toBinaryString(final byte command) {
     return String.format(Locale.ENGLISH,
         "%8s", Integer.toBinaryString(command)).replace(' ', '0');
   }
+
+  /**
+   * Counts the bytes consumed. Once {@link #readAhead()} was called, the source is read in chunks, so single
+   * bytes are taken from a plain array instead of, e.g., the synchronized methods of {@link java.io.ByteArrayInputStream}.
+   */
+  private static final class CountingInputStream extends FilterInputStream {
+
+    private static final int READ_AHEAD_SIZE = 4096;
+
+    private long count;
+
+    private byte[] buffer;
+
+    private int bufferPosition;
+
+    private int bufferLimit;
+
+    CountingInputStream(final InputStream inputStream) {
+      super(inputStream);
+    }
+
+    boolean isOpenable() {
+      return this.in != null;
+    }
+
+    /**
+     * Continues with a new source, keeping the read ahead buffer.
+     */
+    void restart(final InputStream source) {
+      this.in = source;
+      this.count = 0L;
+      this.bufferPosition = 0;
+      this.bufferLimit = 0;
+    }
+
+    /**
+     * Reads beyond the bytes requested from now on. Only allowed if the source is closed after the block.
+     */
+    void readAhead() {
+      if (this.buffer == null) {
+        this.buffer = new byte[READ_AHEAD_SIZE];
+      }
+    }
+
+    @Override
+    public int read() throws IOException {
+      if (this.buffer == null) {
+        final int value = this.in.read();
+        if (value != -1) {
+          this.count++;
+        }
+
+        return value;
+      }
+
+      if (this.bufferPosition == this.bufferLimit && !fillBuffer()) {
+        return -1;
+      }
+
+      this.count++;
+      return this.buffer[this.bufferPosition++] & 0xFF;
+    }
+
+    @Override
+    public int read(final byte[] target, final int offset, final int length) throws IOException {
+      final int read;
+      if (this.buffer == null || this.bufferPosition == this.bufferLimit && length >= this.buffer.length) {
+        read = this.in.read(target, offset, length);
+      } else if (this.bufferPosition == this.bufferLimit && !fillBuffer()) {
+        read = -1;
+      } else {
+        read = Math.min(length, this.bufferLimit - this.bufferPosition);
+        System.arraycopy(this.buffer, this.bufferPosition, target, offset, read);
+        this.bufferPosition += read;
+      }
+
+      if (read > 0) {
+        this.count += read;
+      }
+
+      return read;
+    }
+
+    @Override
+    public long skip(final long length) throws IOException {
+      final int buffered = (int) Math.min(length, this.bufferLimit - this.bufferPosition);
+      this.bufferPosition += buffered;
+      final long skipped = buffered + (buffered < length ? this.in.skip(length - buffered) : 0L);
+      this.count += skipped;
+
+      return skipped;
+    }
+
+    private boolean fillBuffer() throws IOException {
+      final int read = this.in.read(this.buffer, 0, this.buffer.length);
+      this.bufferPosition = 0;
+      this.bufferLimit = Math.max(read, 0);
+
+      return read > 0;
+    }
+  }
 }
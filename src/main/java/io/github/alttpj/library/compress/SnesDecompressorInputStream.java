@@ -0,0 +1,247 @@
+/*
+ * Copyright 2020-2020 the ALttPJ Team @ https://github.com/alttpj
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *          http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.github.alttpj.library.compress;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Arrays;
+import java.util.Objects;
+
+/**
+ * Decompresses the underlying stream while it is read, one command at a time.
+ *
+ * <p>Reading stops at the end of stream marker ({@code 0xFF}). The underlying stream is read byte exact,
+ * so no bytes after the marker are consumed and the stream can be positioned at the next block.</p>
+ *
+ * <p>Memory is bounded: besides the current command (up to 1024 bytes), only the first 64 KiB + 1 KiB of
+ * decompressed data are kept, which is all a command 4 can refer to with its 16 bit absolute offset.</p>
+ *
+ * <p>Like {@link SnesDecompressor}, reading throws an {@link UnsupportedOperationException} when it reaches an unknown
+ * command, and an {@link IOException} for other invalid input.</p>
+ */
+public class SnesDecompressorInputStream extends InputStream {
+
+  /**
+   * The highest offset of command 4 plus its longest length.
+   */
+  private static final int HISTORY_LIMIT = 0xFFFF + CompressorConstants.COMMAND_LENGTH_MAX_EXTENDED + 1;
+
+  private static final int INITIAL_HISTORY_SIZE = 4096;
+
+  private final InputStream inputStream;
+
+  /**
+   * The first decompressed bytes, up to {@link #HISTORY_LIMIT}.
+   */
+  private byte[] history = new byte[INITIAL_HISTORY_SIZE];
+
+  private int historyLength;
+
+  /**
+   * Output of the current command, not yet read.
+   */
+  private final byte[] command = new byte[CompressorConstants.COMMAND_LENGTH_MAX_EXTENDED + 1];
+
+  private int commandPosition;
+
+  private int commandLength;
+
+  private long decompressedLength;
+
+  private boolean endOfStream;
+
+  private boolean closed;
+
+  public SnesDecompressorInputStream(final InputStream inputStream) {
+    this.inputStream = Objects.requireNonNull(inputStream, "inputStream");
+  }
+
+  @Override
+  public int read() throws IOException {
+    if (!ensureCommand()) {
+      return -1;
+    }
+
+    return this.command[this.commandPosition++] & 0xFF;
+  }
+
+  @Override
+  public int read(final byte[] buffer, final int offset, final int length) throws IOException {
+    if (offset < 0 || length < 0 || length > buffer.length - offset) {
+      throw new IndexOutOfBoundsException("Cannot read [" + length + "] bytes at [" + offset + "] into [" + buffer.length + "] bytes.");
+    }
+    if (length == 0) {
+      return 0;
+    }
+
+    int read = 0;
+    while (read < length && ensureCommand()) {
+      final int count = Math.min(length - read, this.commandLength - this.commandPosition);
+      System.arraycopy(this.command, this.commandPosition, buffer, offset + read, count);
+      this.commandPosition += count;
+      read += count;
+    }
+
+    return read == 0 ? -1 : read;
+  }
+
+  /**
+   * Returns the number of bytes which can be read without reading from the underlying stream.
+   *
+   * @return the bytes left from the current command.
+   */
+  @Override
+  public int available() {
+    return this.commandLength - this.commandPosition;
+  }
+
+  /**
+   * Returns the number of bytes decompressed so far, including those not yet read from the current command.
+   *
+   * @return the number of decompressed bytes.
+   */
+  public long getDecompressedLength() {
+    return this.decompressedLength;
+  }
+
+  @Override
+  public void close() throws IOException {
+    if (!this.closed) {
+      this.closed = true;
+      this.endOfStream = true;
+      this.inputStream.close();
+    }
+  }
+
+  /**
+   * Decodes the next command if the current one was read completely.
+   *
+   * @return {@code false} at the end of the stream.
+   */
+  private boolean ensureCommand() throws IOException {
+    while (this.commandPosition == this.commandLength) {
+      if (this.endOfStream) {
+        return false;
+      }
+
+      inflateNextCommand();
+    }
+
+    return true;
+  }
+
+  private void inflateNextCommand() throws IOException {
+    final int header = this.inputStream.read();
+
+    // like SnesDecompressor, a missing end of stream marker also ends the stream.
+    if (header == -1 || header == CommandHeader.END_OF_STREAM) {
+      this.endOfStream = true;
+      return;
+    }
+
+    final int entry = CommandHeader.entry(header);
+    final int length = CommandHeader.isExtendedEntry(entry)
+        ? CommandHeader.baseLengthOf(entry) + readByte()
+        : CommandHeader.baseLengthOf(entry);
+
+    evaluateCommand(CommandHeader.commandOf(entry), length);
+
+    this.commandPosition = 0;
+    this.commandLength = length;
+    this.decompressedLength += length;
+    appendToHistory(length);
+  }
+
+  private void evaluateCommand(final int commandNum, final int length) throws IOException {
+    switch (commandNum) {
+      case 0:
+        readFully(length);
+        break;
+      case 1:
+        Arrays.fill(this.command, 0, length, (byte) readByte());
+        break;
+      case 2:
+        final byte first = (byte) readByte();
+        final byte second = (byte) readByte();
+        for (int ii = 0; ii < length; ii++) {
+          this.command[ii] = (ii & 1) == 0 ? first : second;
+        }
+        break;
+      case 3:
+        final int start = readByte();
+        for (int ii = 0; ii < length; ii++) {
+          this.command[ii] = (byte) (start + ii);
+        }
+        break;
+      case 4:
+        copyExisting(readByte() | readByte() << 8, length);
+        break;
+      default:
+        // same type as SnesDecompressor and ArrayDecompressor.
+        throw new UnsupportedOperationException("Unknown command: [" + SnesDecompressor.toBinaryString((byte) commandNum) + "] after ["
+            + this.decompressedLength + "] bytes.");
+    }
+  }
+
+  /**
+   * Copies from the decompressed data. If the source reaches the end of the decompressed data, the bytes
+   * written by this command are repeated.
+   */
+  private void copyExisting(final int offset, final int length) throws IOException {
+    if (offset >= this.decompressedLength) {
+      throw new IOException("Offset [" + offset + "] points beyond the [" + this.decompressedLength + "] decompressed bytes.");
+    }
+
+    // offsets are below 64 KiB, so the source is either in the history or overlaps into this command.
+    SnesDecompressor.copyRepeated(this.history, offset, this.historyLength - offset, this.command, 0, length);
+  }
+
+  private void appendToHistory(final int length) {
+    final int count = Math.min(length, HISTORY_LIMIT - this.historyLength);
+    if (count <= 0) {
+      return;
+    }
+
+    if (this.historyLength + count > this.history.length) {
+      this.history = Arrays.copyOf(this.history, Math.min(Math.max(this.history.length * 2, this.historyLength + count), HISTORY_LIMIT));
+    }
+
+    System.arraycopy(this.command, 0, this.history, this.historyLength, count);
+    this.historyLength += count;
+  }
+
+  private void readFully(final int length) throws IOException {
+    int read = 0;
+    while (read < length) {
+      final int count = this.inputStream.read(this.command, read, length - read);
+      if (count == -1) {
+        throw new EOFException("Expected [" + length + "] bytes to copy, but the stream ended after [" + read + "].");
+      }
+      read += count;
+    }
+  }
+
+  private int readByte() throws IOException {
+    final int value = this.inputStream.read();
+    if (value == -1) {
+      throw new EOFException("Stream ended within a command after [" + this.decompressedLength + "] bytes.");
+    }
+
+    return value;
+  }
+}
@@ -19,6 +19,7 @@ package io.github.alttpj.library.compress.impl;
 import static io.github.alttpj.library.compress.CompressorConstants.COMMAND_LENGTH_MAX_EXTENDED;
 
 import io.github.alttpj.library.compress.CompressionAlgorithm;
+import io.github.alttpj.library.compress.CompressionMatch;
 
 import java.util.Objects;
 import java.util.StringJoiner;
@@ -36,10 +37,30 @@ abstract class AbstractCompressionAlgorithm implements CompressionAlgorithm {
    * Returns the maximum command length which can be achieved with this compression command.
    */
   @Override
-  public abstract int brute(final byte[] input, byte[] alreadyProcessedUncompressed);
+  public int brute(final byte[] input, final byte[] alreadyProcessedUncompressed) {
+    return brute(input, 0, input.length);
+  }
+
+  @Override
+  public int brute(final byte[] data, final int position, final int limit) {
+    return CompressionMatch.getCommandLength(match(data, position, limit));
+  }
+
+  @Override
+  public byte[] apply(final byte[] input, final int commandLength) {
+    return apply(input, 0, commandLength);
+  }
+
+  @Override
+  public byte[] apply(final byte[] data, final int position, final int commandLength) {
+    return encode(data, position, CompressionMatch.of(commandLength));
+  }
+
+  @Override
+  public abstract long match(final byte[] data, int position, int limit);
 
   @Override
-  public abstract byte[] apply(final byte[] input, final int commandLength);
+  public abstract byte[] encode(final byte[] data, int position, long match);
 
   @Override
   public final int getCommandNum() {
@@ -16,51 +16,115 @@
 
 package io.github.alttpj.library.compress.impl;
 
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+
+/**
+ * Compares byte ranges without copying them.
+ *
+ * <p>Like {@link RunScanner}, the first bytes are compared one by one and longer ranges eight bytes at a time.</p>
+ */
 final class ArrayUtils {
 
   private ArrayUtils() {
     // util class.
   }
 
-  public static boolean equals(final byte[] firstArray, final int faFromIndex, final int faToIndex,
-                               final byte[] secondArray, final int saFromIndex, final int saToIndex) {
-    rangeCheck(firstArray.length, faFromIndex, faToIndex);
-    rangeCheck(secondArray.length, saFromIndex, saToIndex);
-
-    final int aLength = faToIndex - faFromIndex;
-    final int bLength = saToIndex - saFromIndex;
-    if (aLength != bLength) {
-      return false;
+  /**
+   * Returns the length of the common prefix of {@code first[firstFrom..firstFrom+length)} and
+   * {@code second[secondFrom..secondFrom+length)}. The ranges may overlap.
+   *
+   * @param first
+   *     the first array.
+   * @param firstFrom
+   *     the first byte to compare in {@code first}.
+   * @param second
+   *     the second array, may be the same as {@code first}.
+   * @param secondFrom
+   *     the first byte to compare in {@code second}.
+   * @param length
+   *     the maximum number of bytes to compare.
+   * @return the number of equal bytes before the first difference, or {@code length} if the ranges are equal.
+   */
+  static int mismatch(final byte[] first, final int firstFrom, final byte[] second, final int secondFrom, final int length) {
+    final int prefixEnd = Math.min(length, Long.BYTES);
+    int index = 0;
+    while (index < prefixEnd && first[firstFrom + index] == second[secondFrom + index]) {
+      index++;
     }
 
-    final byte[] aSub = new byte[aLength];
-    final byte[] bSub = new byte[bLength];
-    System.arraycopy(firstArray, faFromIndex, aSub, 0, aLength);
-    System.arraycopy(secondArray, saFromIndex, bSub, 0, bLength);
-
-    for (int ii = 0; ii < aSub.length; ii++) {
-      if (aSub[ii] != bSub[ii]) {
-        return false;
-      }
+    if (index < prefixEnd || index == length) {
+      return index;
     }
 
-    return true;
+    return mismatchWide(first, firstFrom, second, secondFrom, index, length);
   }
 
   /**
-   * Checks that {@code fromIndex} and {@code toIndex} are in
-   * the range and throws an exception if they aren't.
+   * Returns the length of the match of {@code input[inputOffset..inputOffset+maxLength)} at {@code history[candidate..)}
+   * with the semantics of command 4.
+   *
+   * <p>Once the history is exhausted, the decompressor copies the bytes it just wrote, which are the matched
+   * input bytes. So beyond the end of the history, the input is compared with itself, {@code historyLength - candidate}
+   * bytes earlier.</p>
+   *
+   * @param history
+   *     the already processed bytes. May be the same array as {@code input}.
+   * @param historyLength
+   *     the number of valid bytes in {@code history}.
+   * @param candidate
+   *     the source of the match in the history.
+   * @param input
+   *     the bytes to be compressed.
+   * @param inputOffset
+   *     the first byte to match.
+   * @param maxLength
+   *     the maximum length of the match.
+   * @return the length of the match.
    */
-  static void rangeCheck(final int arrayLength, final int fromIndex, final int toIndex) {
-    if (fromIndex > toIndex) {
-      throw new IllegalArgumentException(
-          "fromIndex(" + fromIndex + ") > toIndex(" + toIndex + ")");
+  static int matchLength(final byte[] history, final int historyLength, final int candidate,
+                         final byte[] input, final int inputOffset, final int maxLength) {
+    final int distance = historyLength - candidate;
+    final int inHistory = Math.min(distance, maxLength);
+
+    final int length = mismatch(history, candidate, input, inputOffset, inHistory);
+    if (length < inHistory || length == maxLength) {
+      return length;
     }
-    if (fromIndex < 0) {
-      throw new ArrayIndexOutOfBoundsException("From-Index: " + fromIndex);
+
+    return length + mismatch(input, inputOffset + length - distance, input, inputOffset + length, maxLength - length);
+  }
+
+  private static int mismatchWide(final byte[] first, final int firstFrom, final byte[] second, final int secondFrom,
+                                  final int start, final int length) {
+    int index = start;
+    // local views, which escape analysis can remove. Compressors compare within their input, so mostly one is wrapped.
+    final ByteBuffer firstView = getLittleEndianView(first);
+    final ByteBuffer secondView = first == second ? firstView : getLittleEndianView(second);
+    while (index + Long.BYTES <= length) {
+      final long difference = firstView.getLong(firstFrom + index) ^ secondView.getLong(secondFrom + index);
+      if (difference != 0L) {
+        return index + (Long.numberOfTrailingZeros(difference) >>> 3);
+      }
+      index += Long.BYTES;
     }
-    if (toIndex > arrayLength) {
-      throw new ArrayIndexOutOfBoundsException("To-Index: " + toIndex);
+
+    while (index < length && first[firstFrom + index] == second[secondFrom + index]) {
+      index++;
     }
+
+    return index;
+  }
+
+  /**
+   * Returns a new little endian view of {@code data} for reading eight bytes at once. Callers keep it in a local
+   * variable only, so no array stays reachable beyond the comparison and the view itself is usually not allocated.
+   *
+   * @param data
+   *     the array to view.
+   * @return a view of the whole array.
+   */
+  static ByteBuffer getLittleEndianView(final byte[] data) {
+    return ByteBuffer.wrap(data).order(ByteOrder.LITTLE_ENDIAN);
   }
 }
@@ -18,6 +18,8 @@ package io.github.alttpj.library.compress.impl;
 
 import static io.github.alttpj.library.compress.CompressorConstants.COMMAND_LENGTH_MAX_NORMAL;
 
+import io.github.alttpj.library.compress.CompressionMatch;
+
 import java.util.StringJoiner;
 import java.util.logging.Level;
 import java.util.logging.Logger;
@@ -31,24 +33,24 @@ public class CopyCompressAlgorithm extends AbstractCompressionAlgorithm {
   }
 
   @Override
-  public int brute(final byte[] input, final byte[] alreadyProcessedUncompressed) {
+  public long match(final byte[] data, final int position, final int limit) {
     // we would not want to use this for just one byte, but to show up at top when sorted.
-    return 0;
+    return CompressionMatch.NONE;
   }
 
   @Override
-  public byte[] apply(final byte[] input, final int commandLength) {
+  public byte[] encode(final byte[] data, final int position, final long match) {
+    final int commandLength = CompressionMatch.getCommandLength(match);
     final int contentLength = commandLength + 1;
 
     if (commandLength > COMMAND_LENGTH_MAX_NORMAL) {
-      // we do not want a long copy of a byte array, because it might contain better
-      // compression options at other indices.
-      LOG.log(Level.WARNING, "Copying more than COMMAND_LENGTH_MAX_NORMAL(" + COMMAND_LENGTH_MAX_NORMAL + ") bytes.");
-      LOG.log(Level.WARNING, "If you see this message, refactor the code to not use copy for this amount.");
+      // a long copy only pays off if there are no better compression options at other indices,
+      // which only the optimal parse can tell.
+      LOG.log(Level.FINE, "Copying more than COMMAND_LENGTH_MAX_NORMAL(" + COMMAND_LENGTH_MAX_NORMAL + ") bytes.");
       // add two headers and contentlength = commandlength+1
       final byte[] out = new byte[2 + contentLength];
       writeExtendedHeader(out, commandLength);
-      System.arraycopy(input, 0, out, 2, contentLength);
+      System.arraycopy(data, position, out, 2, contentLength);
 
       return out;
     }
@@ -56,7 +58,7 @@ public class CopyCompressAlgorithm extends AbstractCompressionAlgorithm {
     // one header + contentlength
     final byte[] out = new byte[1 + contentLength];
     out[0] = (byte) (commandLength & 0xFF);
-    System.arraycopy(input, 0, out, 1, contentLength);
+    System.arraycopy(data, position, out, 1, contentLength);
 
     return out;
   }
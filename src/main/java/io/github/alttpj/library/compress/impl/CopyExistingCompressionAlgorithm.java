@@ -20,140 +20,190 @@ import static io.github.alttpj.library.compress.CompressorConstants.COMMAND_LENG
 import static io.github.alttpj.library.compress.CompressorConstants.COMMAND_LENGTH_MAX_NORMAL;
 
 import io.github.alttpj.library.compress.CompressionAlgorithm;
+import io.github.alttpj.library.compress.CompressionMatch;
 
 import java.util.StringJoiner;
 
 public class CopyExistingCompressionAlgorithm extends AbstractCompressionAlgorithm implements CompressionAlgorithm {
 
-  private int posInUncompressed = -1;
   /**
-   * Found if longestSubArray if > 0.
+   * A match needs to be longer than the three bytes the command itself takes.
+   */
+  private static final int MIN_MATCH_LENGTH = 4;
+
+  /**
+   * Indexes the already processed bytes across calls of {@link #brute(byte[], byte[])}. Created by the first call,
+   * so an instance which is only used through {@link #match(byte[], int, int)} and {@link #encode(byte[], int, long)}
+   * holds no state.
    */
-  private int longestSubArray;
+  private HashChainMatchFinder matchFinder;
+
+  private int posInUncompressed = -1;
 
   public CopyExistingCompressionAlgorithm() {
     super(4);
   }
 
+  public CopyExistingCompressionAlgorithm(final HashChainMatchFinder matchFinder) {
+    super(4);
+    this.matchFinder = matchFinder;
+  }
+
+  /**
+   * Finds the longest match by comparing all possible sources, without changing the state of this instance.
+   * This takes time proportional to the history, so compressors should use
+   * {@link #match(byte[], int, int, HashChainMatchFinder)} with a match finder per input instead.
+   */
   @Override
-  public int brute(final byte[] input, final byte[] alreadyProcessedUncompressed) {
-    // search for the longest match first
-    final int max = getMaxSearchLength(input);
-    final RingBuffer ringBuffer = new RingBuffer(alreadyProcessedUncompressed);
+  public long match(final byte[] data, final int position, final int limit) {
+    final int max = Math.min(limit - position, COMMAND_LENGTH_MAX_EXTENDED + 1);
+    if (max < MIN_MATCH_LENGTH) {
+      return CompressionMatch.NONE;
+    }
+
+    int bestLength = 0;
+    int bestOffset = 0;
+    // the most recent source wins on equal length, like in the match finder.
+    for (int source = Math.min(position - 1, HashChainMatchFinder.MAX_OFFSET); source >= 0 && bestLength < max; source--) {
+      final int length = ArrayUtils.mismatch(data, source, data, position, max);
+      if (length > bestLength) {
+        bestLength = length;
+        bestOffset = source;
+      }
+    }
+
+    return bestLength < MIN_MATCH_LENGTH ? CompressionMatch.NONE : CompressionMatch.of(bestLength - 1, bestOffset);
+  }
 
-    if (max < 4) {
+  /**
+   * Finds the longest match using the index of the given match finder. Only the match finder is changed, so this
+   * method can be called on a shared instance, with one match finder per input.
+   *
+   * @param data
+   *     the uncompressed data.
+   * @param position
+   *     the first byte to compress. All bytes before were already processed.
+   * @param limit
+   *     the end (exclusive) of the bytes available for compression.
+   * @param finder
+   *     indexes the already processed bytes of this input across calls.
+   * @return the match, or {@link CompressionMatch#NONE} if there is none worth compressing.
+   */
+  public long match(final byte[] data, final int position, final int limit, final HashChainMatchFinder finder) {
+    final int max = Math.min(limit - position, COMMAND_LENGTH_MAX_EXTENDED + 1);
+    if (max < MIN_MATCH_LENGTH) {
       // not worth compressing.
-      return 0;
+      return CompressionMatch.NONE;
     }
 
-    /*
-     * Algorithm:
-     * We will start with half of the max possible length, as it is improbable that the
-     * whole string can be found.
-     *
-     * If we found a match, we will try to find a larger string (halfway between current search size and max size).
-     * If not, we will try to find a string of half the size until it is smaller than 4.
-     */
-    final byte[] search = new byte[max / 2];
-    System.arraycopy(input, 0, search, 0, search.length);
+    final int length = finder.find(data, position, data, position, max);
+    if (length < MIN_MATCH_LENGTH) {
+      return CompressionMatch.NONE;
+    }
 
-    this.longestSubArray = findAinB(search, ringBuffer, input, max);
+    return CompressionMatch.of(length - 1, finder.getMatchOffset());
+  }
 
-    return this.longestSubArray - 1;
+  @Override
+  public byte[] encode(final byte[] data, final int position, final long match) {
+    return applyFromOffset(CompressionMatch.getOffset(match), CompressionMatch.getCommandLength(match));
   }
 
-  private int getMaxSearchLength(final byte[] input) {
-    return Math.min(input.length, COMMAND_LENGTH_MAX_EXTENDED + 1);
+  /**
+   * Finds the longest match of the input in the already processed bytes.
+   *
+   * <p>Consecutive calls on the same instance should pass the growing history of the same input,
+   * so the match finder only needs to index the newly processed bytes. The offset of the match is kept for
+   * {@link #apply(byte[], int)}, so an instance must not be used by several threads this way.</p>
+   */
+  @Override
+  public int brute(final byte[] input, final byte[] alreadyProcessedUncompressed) {
+    return findLongestMatch(alreadyProcessedUncompressed, alreadyProcessedUncompressed.length, input, 0, input.length);
   }
 
-  private int findAinB(final byte[] search, final RingBuffer alreadyProcessedUncompressed, final byte[] originalInput, final int max) {
-    //LOG.info("Trying to find [{}] matching bytes.", search.length);
+  /**
+   * Same as {@link #brute(byte[], byte[])}, but reads both the history and the input from one array.
+   */
+  @Override
+  public int brute(final byte[] data, final int position, final int limit) {
+    final long match = match(data, position, limit, getMatchFinder());
+    if (match != CompressionMatch.NONE) {
+      this.posInUncompressed = CompressionMatch.getOffset(match);
+    }
 
-    final int lastIndexToStartComparing = alreadyProcessedUncompressed.size();
+    return CompressionMatch.getCommandLength(match);
+  }
 
-    for (int posInB = 0; posInB < lastIndexToStartComparing; posInB++) {
-      if (!ArrayUtils.equals(search, 0, search.length,
-          alreadyProcessedUncompressed.toArrayFrom(posInB, search.length), 0, search.length)) {
-        continue;
-      }
+  private int findLongestMatch(final byte[] history, final int historyLength,
+                               final byte[] input, final int inputOffset, final int inputLength) {
+    final int max = Math.min(inputLength, COMMAND_LENGTH_MAX_EXTENDED + 1);
 
-      // found it!
-      this.posInUncompressed = posInB;
-      this.longestSubArray = search.length;
+    if (max < MIN_MATCH_LENGTH) {
+      // not worth compressing.
+      return 0;
+    }
 
-      break;
+    final HashChainMatchFinder finder = getMatchFinder();
+    final int longestSubArray = finder.find(history, historyLength, input, inputOffset, max);
+    if (longestSubArray < MIN_MATCH_LENGTH) {
+      return 0;
     }
 
-    // not found byte[] search in byte[] alreadyProcessedUncompressed
-    // (1) either we already have a match, we could return that one.
-    // (2) if we dont, search with half the size.
-
-    // (1)
-    if (this.posInUncompressed != -1) {
-      // see if we can find a even bigger subarray.
-      final int newLength = ((search.length + max) / 2) + ((search.length + max) % 2);
-      if (newLength <= search.length) {
-        // already the best we could do.
-        // return previous match length
-        return this.longestSubArray;
-      }
+    this.posInUncompressed = finder.getMatchOffset();
 
-      // see if we can find the bigger array.
-      final byte[] newSearch = new byte[newLength];
-      System.arraycopy(originalInput, 0, newSearch, 0, newLength);
-      return findAinB(newSearch, alreadyProcessedUncompressed, originalInput, max);
-    }
+    return longestSubArray - 1;
+  }
 
-    // (2)
-    final int newMax = search.length;
-    final byte[] newSearch = new byte[search.length / 2];
-    if (newSearch.length <= 4) {
-      // no smaller size possible.
-      return this.longestSubArray;
+  private HashChainMatchFinder getMatchFinder() {
+    if (this.matchFinder == null) {
+      this.matchFinder = new HashChainMatchFinder();
     }
 
-    System.arraycopy(originalInput, 0, newSearch, 0, newSearch.length);
-
-    return findAinB(newSearch, alreadyProcessedUncompressed, originalInput, newMax);
+    return this.matchFinder;
   }
 
   public int getPosInUncompressed() {
     return this.posInUncompressed;
   }
 
-
+  /**
+   * Creates the command for the match found by the last call to {@code brute}.
+   */
   @Override
-  public byte[] apply(final byte[] input, final int commandLength) {
-    final byte[] offset = getPosInUncompressedAsByteArray();
+  public byte[] apply(final byte[] data, final int position, final int commandLength) {
+    if (this.posInUncompressed == -1) {
+      throw new IllegalStateException("Did not execute brute method.");
+    }
+
+    return applyFromOffset(this.posInUncompressed, commandLength);
+  }
 
+  /**
+   * Creates the command for copying {@code commandLength + 1} bytes from {@code offset} of the uncompressed output.
+   *
+   * @param offset
+   *     the absolute source position in the uncompressed output.
+   * @param commandLength
+   *     the number of bytes to copy minus one.
+   * @return the compressed command.
+   */
+  public byte[] applyFromOffset(final int offset, final int commandLength) {
     if (commandLength > COMMAND_LENGTH_MAX_NORMAL) {
       final byte[] out = new byte[4];
 
       // 0b11100000 (extension command) + length to bytes 0,1
       writeExtendedHeader(out, commandLength);
 
-      out[2] = offset[0];
-      out[3] = offset[1];
+      out[2] = (byte) (offset & 0xFF);
+      out[3] = (byte) ((offset >> 8) & 0xFF);
 
       return out;
     }
 
     final byte[] out = new byte[3];
     out[0] = (byte) ((getCommandNum() << 5) + commandLength);
-    out[1] = offset[0];
-    out[2] = offset[1];
-
-    return out;
-  }
-
-  private byte[] getPosInUncompressedAsByteArray() {
-    if (this.posInUncompressed == -1) {
-      throw new IllegalStateException("Did not execute brute method.");
-    }
-
-    final byte[] out = new byte[2];
-    out[0] = (byte) (this.posInUncompressed & 0xFF);
-    out[1] = (byte) ((this.posInUncompressed >> 8) & 0xFF);
+    out[1] = (byte) (offset & 0xFF);
+    out[2] = (byte) ((offset >> 8) & 0xFF);
 
     return out;
   }
@@ -0,0 +1,300 @@
+/*
+ * Copyright 2020-2020 the ALttPJ Team @ https://github.com/alttpj
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *          http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.github.alttpj.library.compress.impl;
+
+import static io.github.alttpj.library.compress.CompressorConstants.COMMAND_LENGTH_MAX_EXTENDED;
+
+import java.util.Arrays;
+import java.util.StringJoiner;
+
+/**
+ * Finds the longest match of the upcoming input in the already processed (uncompressed) history.
+ *
+ * <p>Every history position is indexed by the hash of its first three bytes. Positions with the same hash
+ * are chained from the most recent to the oldest one, so a lookup only compares positions which share
+ * the prefix of the input. The index is updated incrementally: the history may only grow between calls,
+ * a shorter history resets the index.</p>
+ *
+ * <p>Matches are compared with the semantics of command 4 in the decompressor, i.e. a match may run
+ * over the end of the history, in which case the bytes copied by the match itself are repeated.</p>
+ *
+ * <p>The search stops at the first match of the nice length, so a lookup costs at most the chain length
+ * comparisons, but far less on repetitive data with a short nice length.</p>
+ *
+ * <p>An instance can be reused for the next input after {@link #reset()}, which does not clear the tables:
+ * chain entries are tagged with a generation, and entries of older generations are treated as empty.</p>
+ */
+public class HashChainMatchFinder {
+
+  /**
+   * Command 4 addresses its source with an absolute 16 bit offset.
+   */
+  public static final int MAX_OFFSET = 0xFFFF;
+
+  /**
+   * Longest possible match, limited by the extended header.
+   */
+  public static final int MAX_MATCH_LENGTH = COMMAND_LENGTH_MAX_EXTENDED + 1;
+
+  public static final int DEFAULT_MAX_CHAIN_LENGTH = 256;
+
+  /**
+   * By default, the search only ends early on a match of the maximum length.
+   */
+  public static final int DEFAULT_NICE_LENGTH = MAX_MATCH_LENGTH;
+
+  private static final int HASH_BYTES = 3;
+  private static final int HASH_BITS = 14;
+  private static final int HASH_SIZE = 1 << HASH_BITS;
+  private static final int NO_POSITION = -1;
+  private static final int INITIAL_CHAIN_SIZE = 1024;
+  private static final int POSITION_BITS = 16;
+  private static final int POSITION_MASK = (1 << POSITION_BITS) - 1;
+  private static final int MAX_GENERATION = 0xFFFF;
+
+  private final int maxChainLength;
+
+  private final int niceLength;
+
+  /**
+   * Most recent position for each hash, tagged with the generation in the upper 16 bits.
+   */
+  private final int[] head = new int[HASH_SIZE];
+
+  /**
+   * Previous position with the same hash, indexed by position and tagged like {@link #head}.
+   */
+  private int[] prev = new int[INITIAL_CHAIN_SIZE];
+
+  /**
+   * Tags the entries of the current input. The tables start zeroed, which is never a valid generation.
+   */
+  private int generation = 1;
+
+  /**
+   * Number of history positions already inserted into the chains.
+   */
+  private int indexed;
+
+  private int historyLength;
+
+  private int matchOffset = NO_POSITION;
+
+  public HashChainMatchFinder() {
+    this(DEFAULT_MAX_CHAIN_LENGTH);
+  }
+
+  /**
+   * Creates a match finder which follows each hash chain up to {@code maxChainLength} positions.
+   *
+   * @param maxChainLength
+   *     the number of candidates to compare per lookup. Higher values find better matches on
+   *     repetitive data at the cost of speed.
+   */
+  public HashChainMatchFinder(final int maxChainLength) {
+    this(maxChainLength, DEFAULT_NICE_LENGTH);
+  }
+
+  /**
+   * Creates a match finder which follows each hash chain up to {@code maxChainLength} positions, but stops at the first
+   * match of at least {@code niceLength} bytes.
+   *
+   * @param maxChainLength
+   *     the number of candidates to compare per lookup.
+   * @param niceLength
+   *     the match length which is good enough to stop the search, like {@code nice_match} in deflate. On repetitive
+   *     data, the chains are long and most candidates match far, so comparing all of them dominates the search.
+   */
+  public HashChainMatchFinder(final int maxChainLength, final int niceLength) {
+    if (maxChainLength < 1) {
+      throw new IllegalArgumentException("maxChainLength must be positive but was [" + maxChainLength + "].");
+    }
+    if (niceLength < 1) {
+      throw new IllegalArgumentException("niceLength must be positive but was [" + niceLength + "].");
+    }
+
+    this.maxChainLength = maxChainLength;
+    this.niceLength = niceLength;
+  }
+
+  /**
+   * Finds the longest match of {@code input[inputOffset..inputOffset+inputLength)} in the history.
+   *
+   * @param history
+   *     the already processed bytes. May be the same array as {@code input}.
+   * @param historyLength
+   *     the number of valid bytes in {@code history}.
+   * @param input
+   *     the bytes to be compressed.
+   * @param inputOffset
+   *     the first byte to match.
+   * @param inputLength
+   *     the number of bytes available for matching.
+   * @return the length of the longest match, or {@code 0} if there is none.
+   *     The offset is available via {@link #getMatchOffset()}.
+   */
+  public int find(final byte[] history, final int historyLength,
+                  final byte[] input, final int inputOffset, final int inputLength) {
+    updateIndex(history, historyLength);
+    this.matchOffset = NO_POSITION;
+
+    final int maxLength = Math.min(inputLength, MAX_MATCH_LENGTH);
+    if (maxLength < 1) {
+      return 0;
+    }
+    final int goodEnough = Math.min(maxLength, this.niceLength);
+
+    int bestLength = 0;
+
+    if (maxLength >= HASH_BYTES) {
+      int candidate = positionOf(this.head[hash(input, inputOffset)]);
+      int remainingCandidates = this.maxChainLength;
+
+      while (candidate != NO_POSITION && remainingCandidates > 0) {
+        // only a longer match is of interest, which has to match the byte after the best match so far.
+        final boolean mayBeLonger = bestLength == 0
+            || getSourceByte(history, historyLength, candidate, input, inputOffset, bestLength) == input[inputOffset + bestLength];
+        final int length = mayBeLonger
+            ? ArrayUtils.matchLength(history, historyLength, candidate, input, inputOffset, maxLength)
+            : 0;
+        if (length > bestLength) {
+          bestLength = length;
+          this.matchOffset = candidate;
+
+          if (length >= goodEnough) {
+            return bestLength;
+          }
+        }
+
+        candidate = positionOf(this.prev[candidate]);
+        remainingCandidates--;
+      }
+    }
+
+    // the last positions of the history cannot be hashed yet, compare them directly.
+    final int lastPosition = Math.min(historyLength - 1, MAX_OFFSET);
+    for (int candidate = Math.max(this.indexed, 0); candidate <= lastPosition; candidate++) {
+      final int length = ArrayUtils.matchLength(history, historyLength, candidate, input, inputOffset, maxLength);
+      if (length > bestLength) {
+        bestLength = length;
+        this.matchOffset = candidate;
+      }
+    }
+
+    return bestLength;
+  }
+
+  /**
+   * Returns the offset of the last match found.
+   *
+   * @return the offset of the last match in the history or {@code -1} if the last lookup did not find a match.
+   */
+  public int getMatchOffset() {
+    return this.matchOffset;
+  }
+
+  /**
+   * Returns the match length which ends a search.
+   *
+   * @return the length of a match which is good enough.
+   */
+  public int getNiceLength() {
+    return this.niceLength;
+  }
+
+  /**
+   * Returns the number of history positions the chain table holds. It grows with the longest input since creation.
+   *
+   * @return the size of the chain table, in positions.
+   */
+  public int getChainCapacity() {
+    return this.prev.length;
+  }
+
+  /**
+   * Forgets the history, so the next call of {@link #find(byte[], int, byte[], int, int)} may pass a new input.
+   * The tables are kept, so a reset match finder does not allocate for inputs of similar size.
+   */
+  public void reset() {
+    if (this.generation == MAX_GENERATION) {
+      Arrays.fill(this.head, 0);
+      this.generation = 0;
+    }
+    this.generation++;
+    this.indexed = 0;
+    this.historyLength = 0;
+    this.matchOffset = NO_POSITION;
+  }
+
+  private void updateIndex(final byte[] history, final int newHistoryLength) {
+    if (newHistoryLength < this.historyLength) {
+      reset();
+    }
+    this.historyLength = newHistoryLength;
+
+    // positions beyond MAX_OFFSET can never be the source of a command 4.
+    final int lastHashable = Math.min(newHistoryLength - HASH_BYTES, MAX_OFFSET);
+    if (lastHashable >= this.prev.length) {
+      this.prev = Arrays.copyOf(this.prev, Math.min(Math.max(this.prev.length * 2, lastHashable + 1), MAX_OFFSET + 1));
+    }
+
+    for (int position = this.indexed; position <= lastHashable; position++) {
+      final int hash = hash(history, position);
+      this.prev[position] = this.head[hash];
+      this.head[hash] = this.generation << POSITION_BITS | position;
+      this.indexed = position + 1;
+    }
+  }
+
+  /**
+   * Returns the byte a match at {@code candidate} copies to {@code input[inputOffset + index]}, see
+   * {@link ArrayUtils#matchLength(byte[], int, int, byte[], int, int)}.
+   */
+  private static byte getSourceByte(final byte[] history, final int historyLength, final int candidate,
+                                    final byte[] input, final int inputOffset, final int index) {
+    final int distance = historyLength - candidate;
+
+    return index < distance ? history[candidate + index] : input[inputOffset + index - distance];
+  }
+
+  /**
+   * Returns the position of a chain entry, or {@code -1} if the entry belongs to an earlier input.
+   */
+  private int positionOf(final int entry) {
+    return entry >>> POSITION_BITS == this.generation ? entry & POSITION_MASK : NO_POSITION;
+  }
+
+  private static int hash(final byte[] data, final int position) {
+    final int prefix = (data[position] & 0xFF) << 16
+        | (data[position + 1] & 0xFF) << 8
+        | data[position + 2] & 0xFF;
+
+    return (prefix * 0x9E3779B1) >>> (Integer.SIZE - HASH_BITS);
+  }
+
+  @Override
+  public String toString() {
+    return new StringJoiner(", ", "HashChainMatchFinder{", "}")
+        .add("maxChainLength=" + this.maxChainLength)
+        .add("niceLength=" + this.niceLength)
+        .add("indexed=" + this.indexed)
+        .add("historyLength=" + this.historyLength)
+        .add("generation=" + this.generation)
+        .add("matchOffset=" + this.matchOffset)
+        .toString();
+  }
+}
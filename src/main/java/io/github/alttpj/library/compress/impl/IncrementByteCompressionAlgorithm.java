@@ -20,6 +20,7 @@ import static io.github.alttpj.library.compress.CompressorConstants.COMMAND_LENG
 import static io.github.alttpj.library.compress.CompressorConstants.COMMAND_LENGTH_MAX_NORMAL;
 
 import io.github.alttpj.library.compress.CompressionAlgorithm;
+import io.github.alttpj.library.compress.CompressionMatch;
 
 import java.util.StringJoiner;
 
@@ -30,44 +31,41 @@ public class IncrementByteCompressionAlgorithm extends AbstractCompressionAlgori
   }
 
   @Override
-  public int brute(final byte[] input, final byte[] alreadyProcessedUncompressed) {
-    if (input.length < 4) {
-      return 0;
+  public long match(final byte[] data, final int position, final int limit) {
+    final int available = limit - position;
+    if (available < 4) {
+      return CompressionMatch.NONE;
     }
 
-    int incrementCount = 1;
-    for (int ii = 1; ii < Math.min(input.length, COMMAND_LENGTH_MAX_EXTENDED); ii++) {
-      if (input[ii] != input[0] + ii) {
-        break;
-      }
-
-      incrementCount++;
-    }
+    final int end = Math.min(available, COMMAND_LENGTH_MAX_EXTENDED);
+    final int incrementCount = RunScanner.countIncrementing(data, position, position + end);
 
     if (incrementCount < 3) {
       // does not suffice.
-      return 0;
+      return CompressionMatch.NONE;
     }
 
-    return incrementCount - 1;
+    return CompressionMatch.of(incrementCount - 1);
   }
 
   @Override
-  public byte[] apply(final byte[] input, final int commandLength) {
+  public byte[] encode(final byte[] data, final int position, final long match) {
+    final int commandLength = CompressionMatch.getCommandLength(match);
+
     if (commandLength > COMMAND_LENGTH_MAX_NORMAL) {
       final byte[] out = new byte[3];
 
       // 0b11100000 (extension command) + length to bytes 0,1
       writeExtendedHeader(out, commandLength);
 
-      out[2] = input[0];
+      out[2] = data[position];
 
       return out;
     }
 
     final byte[] out = new byte[2];
     out[0] = (byte) ((getCommandNum() << 5) + commandLength);
-    out[1] = input[0];
+    out[1] = data[position];
 
     return out;
   }
@@ -19,6 +19,8 @@ package io.github.alttpj.library.compress.impl;
 import static io.github.alttpj.library.compress.CompressorConstants.COMMAND_LENGTH_MAX_EXTENDED;
 import static io.github.alttpj.library.compress.CompressorConstants.COMMAND_LENGTH_MAX_NORMAL;
 
+import io.github.alttpj.library.compress.CompressionMatch;
+
 import java.util.StringJoiner;
 
 public class RepeatByteCompressionAlgorithm extends AbstractCompressionAlgorithm {
@@ -28,32 +30,27 @@ public class RepeatByteCompressionAlgorithm extends AbstractCompressionAlgorithm
   }
 
   @Override
-  public int brute(final byte[] input, final byte[] alreadyProcessedUncompressed) {
-    if (input.length < 4) {
-      return 0;
+  public long match(final byte[] data, final int position, final int limit) {
+    final int available = limit - position;
+    if (available < 4) {
+      return CompressionMatch.NONE;
     }
 
-    int repeatCount = 1;
-    for (int ii = 1; ii < Math.min(input.length, COMMAND_LENGTH_MAX_EXTENDED); ii++) {
-      if (input[ii] != input[0]) {
-        break;
-      }
-
-      repeatCount++;
-    }
+    final int repeatCount = RunScanner.countRepeated(data, position, position + Math.min(available, COMMAND_LENGTH_MAX_EXTENDED));
 
     if (repeatCount < 3) {
       // this is the same as just copying using Copy.cl=1
-      return 0;
+      return CompressionMatch.NONE;
     }
 
     // command length is count - 1.
-    return repeatCount - 1;
+    return CompressionMatch.of(repeatCount - 1);
   }
 
   @Override
-  public byte[] apply(final byte[] input, final int commandLength) {
-    final byte repeatedChar = input[0];
+  public byte[] encode(final byte[] data, final int position, final long match) {
+    final int commandLength = CompressionMatch.getCommandLength(match);
+    final byte repeatedChar = data[position];
 
     if (commandLength > COMMAND_LENGTH_MAX_NORMAL) {
       final byte[] out = new byte[3];
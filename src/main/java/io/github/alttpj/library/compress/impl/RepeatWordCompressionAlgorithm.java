@@ -20,6 +20,7 @@ import static io.github.alttpj.library.compress.CompressorConstants.COMMAND_LENG
 import static io.github.alttpj.library.compress.CompressorConstants.COMMAND_LENGTH_MAX_NORMAL;
 
 import io.github.alttpj.library.compress.CompressionAlgorithm;
+import io.github.alttpj.library.compress.CompressionMatch;
 
 import java.util.StringJoiner;
 
@@ -30,50 +31,45 @@ public class RepeatWordCompressionAlgorithm extends AbstractCompressionAlgorithm
   }
 
   @Override
-  public int brute(final byte[] input, final byte[] alreadyProcessedUncompressed) {
-    if (input.length < 4) {
-      return 0;
+  public long match(final byte[] data, final int position, final int limit) {
+    final int available = limit - position;
+    if (available < 4) {
+      return CompressionMatch.NONE;
     }
 
-    int repeated = 2;
-
-    final int lastPossibleOffset = Math.min(input.length, COMMAND_LENGTH_MAX_EXTENDED);
-    for (int ii = 2; ii < lastPossibleOffset; ii++) {
-      if (input[ii] != input[ii % 2]) {
-        break;
-      }
-
-      repeated++;
-    }
+    final int lastPossibleOffset = Math.min(available, COMMAND_LENGTH_MAX_EXTENDED);
+    final int repeated = RunScanner.countAlternating(data, position, position + lastPossibleOffset);
 
     if (repeated < 4) {
       // repeat only the first byte does not make sense (len=0)
       // cl=2 will consume three bytes (header + two data bytes), does not make any sense either.
 
-      return 0;
+      return CompressionMatch.NONE;
     }
 
-    return repeated - 1;
+    return CompressionMatch.of(repeated - 1);
   }
 
   @Override
-  public byte[] apply(final byte[] input, final int commandLength) {
+  public byte[] encode(final byte[] data, final int position, final long match) {
+    final int commandLength = CompressionMatch.getCommandLength(match);
+
     if (commandLength > COMMAND_LENGTH_MAX_NORMAL) {
       final byte[] out = new byte[4];
 
       // 0b11100000 (extension command) + length to bytes 0,1
       writeExtendedHeader(out, commandLength);
 
-      out[2] = input[0];
-      out[3] = input[1];
+      out[2] = data[position];
+      out[3] = data[position + 1];
 
       return out;
     }
 
     final byte[] out = new byte[3];
     out[0] = (byte) ((getCommandNum() << 5) + commandLength);
-    out[1] = input[0];
-    out[2] = input[1];
+    out[1] = data[position];
+    out[2] = data[position + 1];
 
     return out;
   }
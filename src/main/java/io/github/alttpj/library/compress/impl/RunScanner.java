@@ -0,0 +1,184 @@
+/*
+ * Copyright 2020-2020 the ALttPJ Team @ https://github.com/alttpj
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *          http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.github.alttpj.library.compress.impl;
+
+import java.nio.ByteBuffer;
+
+/**
+ * Measures runs of repeated, alternating and incrementing bytes.
+ *
+ * <p>Most runs are short, so the first eight bytes are compared one by one. Beyond that, eight bytes
+ * are compared at once: they are read as one little endian {@code long} and compared against the
+ * expected bytes of the run, so a mismatch is located by the trailing zeros of the difference.
+ * The last bytes of a run are compared one by one again.</p>
+ */
+final class RunScanner {
+
+  private static final long LANES = 0x0101_0101_0101_0101L;
+
+  private static final long LOW_BITS = 0x7F7F_7F7F_7F7F_7F7FL;
+
+  private static final long HIGH_BITS = 0x8080_8080_8080_8080L;
+
+  private RunScanner() {
+    // utility class.
+  }
+
+  /**
+   * Counts the bytes from {@code position} which are equal to {@code data[position]}.
+   *
+   * @param data
+   *     the input.
+   * @param position
+   *     the first byte of the run.
+   * @param end
+   *     the end (exclusive) of the bytes to compare.
+   * @return the length of the run, at least {@code 1}.
+   */
+  static int countRepeated(final byte[] data, final int position, final int end) {
+    final int prefixEnd = Math.min(end, position + Long.BYTES);
+    int index = position + 1;
+    while (index < prefixEnd && data[index] == data[position]) {
+      index++;
+    }
+
+    if (index < prefixEnd || index == end) {
+      return index - position;
+    }
+
+    return countRepeatedWide(data, position, index, end);
+  }
+
+  /**
+   * Counts the bytes from {@code position} which repeat the two bytes at {@code position}.
+   *
+   * @param data
+   *     the input.
+   * @param position
+   *     the first byte of the run.
+   * @param end
+   *     the end (exclusive) of the bytes to compare, at least {@code position + 2}.
+   * @return the length of the run, at least {@code 2}.
+   */
+  static int countAlternating(final byte[] data, final int position, final int end) {
+    final int prefixEnd = Math.min(end, position + Long.BYTES);
+    int index = position + 2;
+    while (index < prefixEnd && data[index] == data[position + ((index - position) & 1)]) {
+      index++;
+    }
+
+    if (index < prefixEnd || index == end) {
+      return index - position;
+    }
+
+    return countAlternatingWide(data, position, index, end);
+  }
+
+  /**
+   * Counts the bytes from {@code position} which each are one more than the byte before.
+   *
+   * <p>The bytes are compared as signed values, so a run ends where it would pass {@code 0x7F}.</p>
+   *
+   * @param data
+   *     the input.
+   * @param position
+   *     the first byte of the run.
+   * @param end
+   *     the end (exclusive) of the bytes to compare.
+   * @return the length of the run, at least {@code 1}.
+   */
+  static int countIncrementing(final byte[] data, final int position, final int end) {
+    final int last = Math.min(end, position + Byte.MAX_VALUE + 1 - data[position]);
+    final int prefixEnd = Math.min(last, position + Long.BYTES);
+    int index = position + 1;
+    while (index < prefixEnd && data[index] == (byte) (data[position] + index - position)) {
+      index++;
+    }
+
+    if (index < prefixEnd || index == last) {
+      return index - position;
+    }
+
+    return countIncrementingWide(data, position, index, last);
+  }
+
+  private static int countRepeatedWide(final byte[] data, final int position, final int start, final int end) {
+    final ByteBuffer view = ArrayUtils.getLittleEndianView(data);
+    final long expected = (data[position] & 0xFFL) * LANES;
+
+    int index = start;
+    while (index + Long.BYTES <= end) {
+      final long difference = view.getLong(index) ^ expected;
+      if (difference != 0L) {
+        return index - position + (Long.numberOfTrailingZeros(difference) >>> 3);
+      }
+      index += Long.BYTES;
+    }
+
+    while (index < end && data[index] == data[position]) {
+      index++;
+    }
+
+    return index - position;
+  }
+
+  private static int countAlternatingWide(final byte[] data, final int position, final int start, final int end) {
+    final ByteBuffer view = ArrayUtils.getLittleEndianView(data);
+    // start is at an even distance from the position, so the pattern stays aligned.
+    final long expected = (view.getShort(position) & 0xFFFFL) * 0x0001_0001_0001_0001L;
+
+    int index = start;
+    while (index + Long.BYTES <= end) {
+      final long difference = view.getLong(index) ^ expected;
+      if (difference != 0L) {
+        return index - position + (Long.numberOfTrailingZeros(difference) >>> 3);
+      }
+      index += Long.BYTES;
+    }
+
+    while (index < end && data[index] == data[position + ((index - position) & 1)]) {
+      index++;
+    }
+
+    return index - position;
+  }
+
+  private static int countIncrementingWide(final byte[] data, final int position, final int start, final int end) {
+    final ByteBuffer view = ArrayUtils.getLittleEndianView(data);
+    long expected = 0L;
+    for (int lane = Long.BYTES - 1; lane >= 0; lane--) {
+      expected = expected << 8 | (data[position] + start - position + lane) & 0xFFL;
+    }
+
+    int index = start;
+    while (index + Long.BYTES <= end) {
+      final long difference = view.getLong(index) ^ expected;
+      if (difference != 0L) {
+        return index - position + (Long.numberOfTrailingZeros(difference) >>> 3);
+      }
+      index += Long.BYTES;
+      // adds eight to each byte without carrying into the next one.
+      expected = ((expected & LOW_BITS) + Long.BYTES * LANES) ^ (expected & HIGH_BITS);
+    }
+
+    while (index < end && data[index] == (byte) (data[position] + index - position)) {
+      index++;
+    }
+
+    return index - position;
+  }
+}
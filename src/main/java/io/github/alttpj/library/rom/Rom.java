@@ -0,0 +1,346 @@
+/*
+ * Copyright 2020-2020 the ALttPJ Team @ https://github.com/alttpj
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *          http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.github.alttpj.library.rom;
+
+import io.github.alttpj.library.compress.CompressedBlockInfo;
+import io.github.alttpj.library.compress.CompressedBlockScanner;
+import io.github.alttpj.library.compress.SnesDecompressor;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.SortedMap;
+import java.util.StringJoiner;
+import java.util.TreeMap;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * Read only access to a ROM image.
+ *
+ * <p>The image is usually memory-mapped, so only the pages actually read are loaded and nothing is copied onto
+ * the heap. All methods use absolute reads on views of the image, so a {@code Rom} can be shared between threads.
+ * Offsets are relative to the start of the image without copier header.</p>
+ */
+public final class Rom {
+
+  private static final int COPIER_HEADER_LENGTH = 0x200;
+
+  private static final int POINTER_LENGTH = 3;
+
+  /**
+   * Number of blocks decompressed by one fork-join task without splitting further.
+   */
+  private static final int BLOCKS_PER_TASK = 4;
+
+  private final ByteBuffer data;
+
+  private final RomMapping mapping;
+
+  private Rom(final ByteBuffer data, final RomMapping mapping) {
+    this.data = data;
+    this.mapping = mapping;
+  }
+
+  /**
+   * Maps the ROM image at {@code path} into memory. A copier header is skipped, which is detected by the
+   * image size being 512 bytes more than a multiple of 32 KiB.
+   *
+   * @param path
+   *     the ROM image.
+   * @param mapping
+   *     the memory mapping of the cartridge.
+   * @return the ROM.
+   * @throws IOException
+   *     error opening or mapping the file.
+   */
+  public static Rom open(final Path path, final RomMapping mapping) throws IOException {
+    try (final FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+      final long size = channel.size();
+      final long start = size % 0x8000 == COPIER_HEADER_LENGTH ? COPIER_HEADER_LENGTH : 0L;
+
+      // the mapping stays valid after the channel is closed.
+      return new Rom(channel.map(FileChannel.MapMode.READ_ONLY, start, size - start), mapping);
+    }
+  }
+
+  /**
+   * Uses the remaining bytes of {@code image} as ROM image. The buffer is not copied and must not be changed.
+   *
+   * @param image
+   *     the ROM image without copier header.
+   * @param mapping
+   *     the memory mapping of the cartridge.
+   * @return the ROM.
+   */
+  public static Rom wrap(final ByteBuffer image, final RomMapping mapping) {
+    return new Rom(image.slice().asReadOnlyBuffer(), mapping);
+  }
+
+  public RomMapping getMapping() {
+    return this.mapping;
+  }
+
+  /**
+   * Returns the size of the image without copier header.
+   *
+   * @return the number of bytes.
+   */
+  public int size() {
+    return this.data.capacity();
+  }
+
+  /**
+   * Translates an address on the SNES bus to an offset in this image.
+   *
+   * @param snesAddress
+   *     the 24-bit address.
+   * @return the offset in this image.
+   * @throws IllegalArgumentException
+   *     if the address does not map to this image.
+   */
+  public int toFileOffset(final int snesAddress) {
+    final int offset = this.mapping.toFileOffset(snesAddress);
+    checkOffset(offset);
+
+    return offset;
+  }
+
+  /**
+   * Reads an unsigned byte.
+   *
+   * @param offset
+   *     the offset in this image.
+   * @return the byte, {@code 0-255}.
+   */
+  public int readByte(final int offset) {
+    checkOffset(offset);
+
+    return this.data.get(offset) & 0xFF;
+  }
+
+  /**
+   * Reads 24-bit little endian addresses and translates them to offsets.
+   *
+   * @param tableOffset
+   *     the offset of the first pointer in this image.
+   * @param count
+   *     the number of pointers.
+   * @return the offsets the pointers point to.
+   * @throws IllegalArgumentException
+   *     if the table is not within this image, or a pointer does not map to this image.
+   */
+  public int[] readPointers(final int tableOffset, final int count) {
+    return readSplitPointers(tableOffset + 2, tableOffset + 1, tableOffset, count, POINTER_LENGTH);
+  }
+
+  /**
+   * Reads addresses whose bank, high and low bytes are stored in three separate tables, as the game does for
+   * its graphics, and translates them to offsets.
+   *
+   * @param bankTable
+   *     the offset of the bank bytes.
+   * @param highTable
+   *     the offset of the high bytes.
+   * @param lowTable
+   *     the offset of the low bytes.
+   * @param count
+   *     the number of pointers.
+   * @return the offsets the pointers point to.
+   * @throws IllegalArgumentException
+   *     if a table is not within this image, or a pointer does not map to this image.
+   */
+  public int[] readSplitPointers(final int bankTable, final int highTable, final int lowTable, final int count) {
+    return readSplitPointers(bankTable, highTable, lowTable, count, 1);
+  }
+
+  private int[] readSplitPointers(final int bankTable, final int highTable, final int lowTable, final int count, final int stride) {
+    final int[] offsets = new int[count];
+    for (int index = 0; index < count; index++) {
+      final int address = readByte(bankTable + index * stride) << 16
+          | readByte(highTable + index * stride) << 8
+          | readByte(lowTable + index * stride);
+      offsets[index] = toFileOffset(address);
+    }
+
+    return offsets;
+  }
+
+  /**
+   * Returns a read only view of this image, positioned at {@code offset}.
+   * The view has its own position, so it can be read independently of other views.
+   *
+   * @param offset
+   *     the offset in this image.
+   * @return the view, with its limit at the end of the image.
+   */
+  public ByteBuffer slice(final int offset) {
+    checkOffset(offset);
+    final ByteBuffer view = this.data.duplicate();
+    view.position(offset);
+
+    return view;
+  }
+
+  /**
+   * Decompresses the block at {@code offset}.
+   *
+   * @param offset
+   *     the offset of the compressed block in this image.
+   * @return the decompressed bytes.
+   * @throws IOException
+   *     if there is no valid compressed block at {@code offset}.
+   */
+  public byte[] decompress(final int offset) throws IOException {
+    final ByteBuffer source = slice(offset);
+    // the scan is much cheaper than the decompression and yields the exact output size.
+    final CompressedBlockInfo info = CompressedBlockScanner.scan(source);
+    if (!info.isValid()) {
+      throw new IOException(String.format("No valid compressed block at [0x%06X]: %s", offset, info.getError()));
+    }
+
+    final byte[] decompressed = new byte[info.getDecompressedLength()];
+    SnesDecompressor.decompress(source, ByteBuffer.wrap(decompressed));
+
+    return decompressed;
+  }
+
+  /**
+   * Decompresses the blocks at {@code offsets} in parallel on the common fork-join pool.
+   *
+   * @param offsets
+   *     the offsets of the compressed blocks. Duplicates are decompressed once.
+   * @return the decompressed blocks by offset.
+   * @throws IOException
+   *     if there is no valid compressed block at one of the offsets.
+   * @see #decompressAll(int[], ForkJoinPool)
+   */
+  public SortedMap<Integer, byte[]> decompressAll(final int[] offsets) throws IOException {
+    return decompressAll(offsets, ForkJoinPool.commonPool());
+  }
+
+  /**
+   * Decompresses the blocks at {@code offsets} in parallel on the given fork-join pool.
+   * The blocks are split into tasks of a few blocks each, so the work is balanced by work stealing
+   * even though blocks differ in size.
+   *
+   * @param offsets
+   *     the offsets of the compressed blocks. Duplicates are decompressed once.
+   * @param pool
+   *     the pool to run the decompression on.
+   * @return the decompressed blocks by offset.
+   * @throws IOException
+   *     if there is no valid compressed block at one of the offsets.
+   */
+  public SortedMap<Integer, byte[]> decompressAll(final int[] offsets, final ForkJoinPool pool) throws IOException {
+    final int[] distinct = Arrays.stream(offsets).distinct().toArray();
+    final byte[][] blocks = new byte[distinct.length][];
+
+    try {
+      pool.invoke(new DecompressTask(this, distinct, blocks, 0, distinct.length));
+    } catch (final UncheckedIOException uncheckedIoException) {
+      throw uncheckedIoException.getCause();
+    }
+
+    final SortedMap<Integer, byte[]> result = new TreeMap<>();
+    for (int index = 0; index < distinct.length; index++) {
+      result.put(distinct[index], blocks[index]);
+    }
+
+    return Collections.unmodifiableSortedMap(result);
+  }
+
+  /**
+   * Decompresses the blocks referenced by a table of 24-bit little endian addresses in parallel.
+   *
+   * @param tableOffset
+   *     the offset of the first pointer in this image.
+   * @param count
+   *     the number of pointers.
+   * @return the decompressed blocks by offset.
+   * @throws IOException
+   *     if a pointer does not point to a valid compressed block.
+   * @see #readPointers(int, int)
+   */
+  public SortedMap<Integer, byte[]> decompressPointerTable(final int tableOffset, final int count) throws IOException {
+    return decompressAll(readPointers(tableOffset, count));
+  }
+
+  private void checkOffset(final int offset) {
+    if (offset < 0 || offset >= this.data.capacity()) {
+      throw new IllegalArgumentException("Offset [" + offset + "] is outside of the ROM of [" + this.data.capacity() + "] bytes.");
+    }
+  }
+
+  @Override
+  public String toString() {
+    return new StringJoiner(", ", "Rom{", "}")
+        .add("mapping=" + this.mapping)
+        .add("size=" + this.data.capacity())
+        .toString();
+  }
+
+  /**
+   * Decompresses a range of blocks, splitting it in halves until it is small enough.
+   */
+  private static final class DecompressTask extends RecursiveAction {
+
+    private static final long serialVersionUID = 1L;
+
+    private final transient Rom rom;
+
+    private final int[] offsets;
+
+    private final byte[][] blocks;
+
+    private final int from;
+
+    private final int to;
+
+    DecompressTask(final Rom rom, final int[] offsets, final byte[][] blocks, final int from, final int to) {
+      this.rom = rom;
+      this.offsets = offsets;
+      this.blocks = blocks;
+      this.from = from;
+      this.to = to;
+    }
+
+    @Override
+    protected void compute() {
+      if (this.to - this.from > BLOCKS_PER_TASK) {
+        final int middle = (this.from + this.to) >>> 1;
+        invokeAll(
+            new DecompressTask(this.rom, this.offsets, this.blocks, this.from, middle),
+            new DecompressTask(this.rom, this.offsets, this.blocks, middle, this.to));
+        return;
+      }
+
+      for (int index = this.from; index < this.to; index++) {
+        try {
+          this.blocks[index] = this.rom.decompress(this.offsets[index]);
+        } catch (final IOException ioException) {
+          throw new UncheckedIOException(ioException);
+        }
+      }
+    }
+  }
+}
@@ -0,0 +1,117 @@
+/*
+ * Copyright 2020-2020 the ALttPJ Team @ https://github.com/alttpj
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *          http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.github.alttpj.library.rom;
+
+/**
+ * Translates between addresses on the SNES bus and offsets in a ROM image without copier header.
+ */
+public enum RomMapping {
+
+  /**
+   * Mode 20: each bank maps 32 KiB of the ROM to {@code $8000-$FFFF}, banks {@code $80-$FF} mirror banks
+   * {@code $00-$7F}. Used by A Link to the Past.
+   */
+  LOROM {
+    @Override
+    public int toFileOffset(final int snesAddress) {
+      final int bank = (snesAddress >>> 16) & 0xFF;
+      if ((snesAddress & 0x8000) == 0 || bank >= WRAM_BANK && bank < 0x80) {
+        throw invalidAddress(snesAddress, this);
+      }
+
+      return (bank & 0x7F) * LOROM_BANK_SIZE + (snesAddress & 0x7FFF);
+    }
+
+    @Override
+    public int toSnesAddress(final int fileOffset) {
+      if (fileOffset < 0 || fileOffset >= LOROM_MAX_SIZE) {
+        throw invalidOffset(fileOffset, this);
+      }
+
+      // banks $7E and $7F hold the work RAM, so the last 64 KiB are only reachable through the mirror at $FE and $FF.
+      final int bank = fileOffset / LOROM_BANK_SIZE;
+      final int mirror = bank >= WRAM_BANK ? 0x80 : 0x00;
+
+      return (bank | mirror) << 16 | 0x8000 | fileOffset & 0x7FFF;
+    }
+  },
+
+  /**
+   * Mode 21: banks {@code $C0-$FF} map 64 KiB each, the upper halves are mirrored to banks {@code $00-$3F}.
+   */
+  HIROM {
+    @Override
+    public int toFileOffset(final int snesAddress) {
+      final int bank = (snesAddress >>> 16) & 0xFF;
+      if (bank >= 0xC0 || bank >= 0x40 && bank < WRAM_BANK) {
+        return snesAddress & 0x3FFFFF;
+      }
+      if ((bank & 0x7F) < 0x40 && (snesAddress & 0x8000) != 0) {
+        return snesAddress & 0x3FFFFF;
+      }
+
+      throw invalidAddress(snesAddress, this);
+    }
+
+    @Override
+    public int toSnesAddress(final int fileOffset) {
+      if (fileOffset < 0 || fileOffset >= HIROM_MAX_SIZE) {
+        throw invalidOffset(fileOffset, this);
+      }
+
+      return 0xC00000 | fileOffset;
+    }
+  };
+
+  private static final int LOROM_BANK_SIZE = 0x8000;
+
+  private static final int LOROM_MAX_SIZE = 0x400000;
+
+  private static final int HIROM_MAX_SIZE = 0x400000;
+
+  private static final int WRAM_BANK = 0x7E;
+
+  /**
+   * Translates a 24-bit address on the SNES bus to an offset in the ROM image.
+   *
+   * @param snesAddress
+   *     the address, e.g. {@code 0x0CFBA9}.
+   * @return the offset in the ROM image.
+   * @throws IllegalArgumentException
+   *     if the address does not map to the ROM.
+   */
+  public abstract int toFileOffset(int snesAddress);
+
+  /**
+   * Translates an offset in the ROM image to an address on the SNES bus.
+   *
+   * @param fileOffset
+   *     the offset in the ROM image.
+   * @return the 24-bit address.
+   * @throws IllegalArgumentException
+   *     if the offset is beyond the largest ROM of this mapping.
+   */
+  public abstract int toSnesAddress(int fileOffset);
+
+  private static IllegalArgumentException invalidAddress(final int snesAddress, final RomMapping mapping) {
+    return new IllegalArgumentException(String.format("Address [$%06X] does not map to the ROM in [%s].", snesAddress, mapping));
+  }
+
+  private static IllegalArgumentException invalidOffset(final int fileOffset, final RomMapping mapping) {
+    return new IllegalArgumentException("Offset [" + fileOffset + "] is outside of a [" + mapping + "] ROM.");
+  }
+}
@@ -5,4 +5,5 @@ module alttpj.library {
   exports io.github.alttpj.library.i18n;
   exports io.github.alttpj.library.image;
   exports io.github.alttpj.library.image.palette;
+  exports io.github.alttpj.library.rom;
 }
@@ -0,0 +1,110 @@
+/*
+ * Copyright 2020-2020 the ALttPJ Team @ https://github.com/alttpj
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *          http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.github.alttpj.library.compress;
+
+import static org.junit.jupiter.api.Assertions.assertAll;
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import io.github.alttpj.library.testhelper.IOUtils;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+
+public class BatchCompressorTest {
+
+  private static final String[] SPRITES = {"1up", "birb", "coin", "icerod", "meat", "yoshi", "z1link"};
+
+  @Test
+  public void testCompressAllKeepsInputOrder() throws IOException {
+    // given
+    final List<byte[]> inputs = new ArrayList<>();
+    for (final String sprite : SPRITES) {
+      inputs.add(readResource("/gfx/u_" + sprite + ".bin"));
+    }
+    final ExecutorService executor = Executors.newFixedThreadPool(3);
+
+    // when
+    final List<byte[]> compressed;
+    try {
+      compressed = new BatchCompressor(executor, CompressionLevel.LAZY).compressAll(inputs);
+    } finally {
+      executor.shutdown();
+    }
+
+    // then
+    assertEquals(inputs.size(), compressed.size());
+    for (int index = 0; index < inputs.size(); index++) {
+      assertArrayEquals(SnesCompressor.compress(inputs.get(index), CompressionLevel.LAZY), compressed.get(index), SPRITES[index]);
+      try (final SnesDecompressor decompressor = new SnesDecompressor(new ByteArrayInputStream(compressed.get(index)))) {
+        assertArrayEquals(inputs.get(index), decompressor.getDecompressed(), SPRITES[index]);
+      }
+    }
+  }
+
+  @Test
+  public void testSubmitOnCallingThread() throws Exception {
+    // given
+    final byte[] input = new byte[64];
+    Arrays.fill(input, (byte) 0x42);
+
+    // when
+    final CompletableFuture<byte[]> future = new BatchCompressor(Runnable::run).submit(input);
+
+    // then
+    assertAll(
+        () -> assertTrue(future.isDone()),
+        () -> assertArrayEquals(SnesCompressor.compress(input, CompressionLevel.GREEDY), future.get())
+    );
+  }
+
+  @Test
+  public void testFailures() throws IOException {
+    // given
+    final ExecutorService shutDown = Executors.newSingleThreadExecutor();
+    shutDown.shutdown();
+    final BatchCompressor batchCompressor = new BatchCompressor(Runnable::run);
+
+    // then
+    assertAll(
+        () -> assertThrows(NullPointerException.class, () -> batchCompressor.compressAll(Collections.singletonList(null))),
+        () -> assertThrows(ExecutionException.class, () -> batchCompressor.submit(null).get()),
+        () -> assertThrows(RejectedExecutionException.class, () -> new BatchCompressor(shutDown).submit(new byte[1])),
+        () -> assertEquals(0, batchCompressor.compressAll(Collections.emptyList()).size())
+    );
+  }
+
+  private byte[] readResource(final String resource) throws IOException {
+    try (final InputStream inputStream = this.getClass().getResourceAsStream(resource)) {
+      return IOUtils.readAllBytes(inputStream);
+    }
+  }
+}
@@ -0,0 +1,123 @@
+/*
+ * Copyright 2020-2020 the ALttPJ Team @ https://github.com/alttpj
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *          http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.github.alttpj.library.compress;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.nullValue;
+import static org.junit.jupiter.api.Assertions.assertAll;
+
+import io.github.alttpj.library.testhelper.IOUtils;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.ValueSource;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+
+public class CompressedBlockScannerTest {
+
+  @ParameterizedTest
+  @ValueSource(strings = {"1up", "birb", "coin", "icerod", "meat", "yoshi", "z1link"})
+  public void testScanReferenceBlocks(final String gfx) throws IOException {
+    // given: the block, followed by unrelated bytes.
+    final byte[] compressed = readResource("/gfx/" + gfx + ".bin");
+    final byte[] uncompressed = readResource("/gfx/u_" + gfx + ".bin");
+    final byte[] data = new byte[compressed.length + 16];
+    System.arraycopy(compressed, 0, data, 3, compressed.length);
+
+    // when
+    final CompressedBlockInfo info = CompressedBlockScanner.scan(data, 3, data.length - 3);
+
+    // then
+    assertAll(
+        () -> assertThat(info.isValid(), is(true)),
+        () -> assertThat(info.getError(), is(nullValue())),
+        () -> assertThat(info.getErrorPosition(), is(-1)),
+        () -> assertThat(info.getDecompressedLength(), is(uncompressed.length)),
+        () -> assertThat(info.getCompressedLength(), is(compressed.length))
+    );
+  }
+
+  @Test
+  public void testScanByteBuffer() {
+    // given: extended repeat byte (100 bytes), copy from offset 10, end of stream.
+    final ByteBuffer buffer = ByteBuffer.wrap(new byte[] {0x00, (byte) 0b111_001_00, 99, 0x11, (byte) 0b100_00100, 10, 0x00, (byte) 0xff});
+    buffer.position(1);
+
+    // when
+    final CompressedBlockInfo info = CompressedBlockScanner.scan(buffer);
+
+    // then
+    assertAll(
+        () -> assertThat(info.isValid(), is(true)),
+        () -> assertThat(info.getDecompressedLength(), is(105)),
+        () -> assertThat(info.getCompressedLength(), is(7)),
+        () -> assertThat(buffer.position(), is(1))
+    );
+  }
+
+  @Test
+  public void testFirstErrorPosition() {
+    assertAll(
+        () -> assertError(new byte[] {(byte) 0b000_00001, 0x01, 0x02, (byte) 0b000_00011, 0x01}, 3, 2),
+        () -> assertError(new byte[] {(byte) 0b001_00001, 0x01, (byte) 0b111_010_00}, 2, 2),
+        () -> assertError(new byte[] {(byte) 0b001_00001, 0x01, (byte) 0b100_00001, 0x02, 0x00, (byte) 0xff}, 2, 2),
+        () -> assertError(new byte[] {(byte) 0b001_00001, 0x01, (byte) 0b111_110_00, 0x00, (byte) 0xff}, 2, 2),
+        () -> assertError(new byte[] {(byte) 0b001_00001, 0x01}, 2, 2)
+    );
+  }
+
+  @Test
+  public void testMissingEndOfStreamMarker() throws IOException {
+    // given: repeat byte (2 bytes), without end of stream marker.
+    final byte[] data = {(byte) 0b001_00001, 0x11};
+    final byte[] decompressed = new byte[2];
+
+    // when
+    final CompressedBlockInfo info = CompressedBlockScanner.scan(data, 0, data.length);
+    final int decompressedLength = SnesDecompressor.decompress(ByteBuffer.wrap(data), ByteBuffer.wrap(decompressed));
+
+    // then: the decompressor stops at the end of its input, the scanner requires the marker.
+    assertAll(
+        () -> assertThat(decompressedLength, is(2)),
+        () -> assertThat(decompressed, is(new byte[] {0x11, 0x11})),
+        () -> assertThat(info.isValid(), is(false)),
+        () -> assertThat(info.getError(), is("Missing end of stream marker.")),
+        () -> assertThat(info.getDecompressedLength(), is(2))
+    );
+  }
+
+  private static void assertError(final byte[] data, final int errorPosition, final int decompressedLength) {
+    final CompressedBlockInfo info = CompressedBlockScanner.scan(data, 0, data.length);
+
+    assertAll(
+        () -> assertThat(info.toString(), info.isValid(), is(false)),
+        () -> assertThat(info.toString(), info.getErrorPosition(), is(errorPosition)),
+        () -> assertThat(info.toString(), info.getCompressedLength(), is(errorPosition)),
+        () -> assertThat(info.toString(), info.getDecompressedLength(), is(decompressedLength))
+    );
+  }
+
+  private byte[] readResource(final String resource) throws IOException {
+    try (final InputStream inputStream = this.getClass().getResourceAsStream(resource)) {
+      return IOUtils.readAllBytes(inputStream);
+    }
+  }
+}
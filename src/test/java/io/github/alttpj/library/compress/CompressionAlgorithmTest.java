@@ -0,0 +1,91 @@
+/*
+ * Copyright 2020-2020 the ALttPJ Team @ https://github.com/alttpj
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *          http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.github.alttpj.library.compress;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.not;
+import static org.hamcrest.Matchers.sameInstance;
+import static org.junit.jupiter.api.Assertions.assertAll;
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+
+import org.junit.jupiter.api.Test;
+
+public class CompressionAlgorithmTest {
+
+  @Test
+  public void testImplementationWithArrayMethodsOnly() {
+    // given: history {0x22, 0x22}, then a run of three 0x11.
+    final byte[] data = {0x22, 0x22, 0x11, 0x11, 0x11, 0x33};
+    final CompressionAlgorithm algorithm = new RepeatFirstByte();
+
+    // when
+    final int commandLength = algorithm.brute(data, 2, 5);
+    final long match = algorithm.match(data, 2, data.length);
+
+    // then
+    assertAll(
+        () -> assertThat(commandLength, is(2)),
+        () -> assertThat(CompressionMatch.getCommandLength(match), is(2)),
+        () -> assertArrayEquals(new byte[] {0b001_00010, 0x11}, algorithm.apply(data, 2, commandLength)),
+        () -> assertArrayEquals(new byte[] {0b001_00010, 0x11}, algorithm.encode(data, 2, match))
+    );
+  }
+
+  @Test
+  public void testNewInstanceForEachCaller() {
+    // given
+    final CompressionAlgorithms command = CompressionAlgorithms.COPY_EXISTING;
+
+    // when
+    final CompressionAlgorithm first = command.getCompressionAlgorithm();
+    final CompressionAlgorithm second = command.getCompressionAlgorithm();
+
+    // then
+    assertAll(
+        () -> assertThat(first, is(not(sameInstance(second)))),
+        () -> assertThat(first, is(not(sameInstance(command.getSharedInstance())))),
+        () -> assertThat(first.getCommandNum(), is(command.ordinal()))
+    );
+  }
+
+  /**
+   * Implements the methods of the interface of earlier versions only.
+   */
+  private static final class RepeatFirstByte implements CompressionAlgorithm {
+
+    @Override
+    public int getCommandNum() {
+      return 1;
+    }
+
+    @Override
+    public int brute(final byte[] input, final byte[] alreadyProcessedUncompressed) {
+      int length = 1;
+      while (length < input.length && input[length] == input[0]) {
+        length++;
+      }
+
+      return length - 1;
+    }
+
+    @Override
+    public byte[] apply(final byte[] input, final int commandLength) {
+      return new byte[] {(byte) ((getCommandNum() << 5) + commandLength), input[0]};
+    }
+  }
+}
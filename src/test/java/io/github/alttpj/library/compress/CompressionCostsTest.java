@@ -0,0 +1,58 @@
+/*
+ * Copyright 2020-2020 the ALttPJ Team @ https://github.com/alttpj
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *          http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.github.alttpj.library.compress;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.is;
+import static org.junit.jupiter.api.Assertions.assertAll;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import org.junit.jupiter.api.Test;
+
+public class CompressionCostsTest {
+
+  @Test
+  public void testCommandSizes() {
+    assertAll(
+        () -> assertThat(CompressionCosts.getCommandSize(0, 1), is(2)),
+        () -> assertThat(CompressionCosts.getCommandSize(0, 32), is(33)),
+        () -> assertThat(CompressionCosts.getCommandSize(0, 33), is(35)),
+        () -> assertThat(CompressionCosts.getCommandSize(1, 32), is(2)),
+        () -> assertThat(CompressionCosts.getCommandSize(2, 32), is(3)),
+        () -> assertThat(CompressionCosts.getCommandSize(3, 1024), is(3)),
+        () -> assertThat(CompressionCosts.getCommandSize(4, 33), is(4))
+    );
+  }
+
+  @Test
+  public void testSavedBytes() {
+    assertAll(
+        () -> assertThat(CompressionCosts.getSavedBytes(1, 3), is(1)),
+        () -> assertThat(CompressionCosts.getSavedBytes(4, 32), is(29)),
+        () -> assertThat(CompressionCosts.getSavedBytes(4, 33), is(29)),
+        () -> assertThat(CompressionCosts.getSavedBytes(0, 10), is(-1))
+    );
+  }
+
+  @Test
+  public void testInvalidCount() {
+    assertAll(
+        () -> assertThrows(IllegalArgumentException.class, () -> CompressionCosts.getHeaderLength(0)),
+        () -> assertThrows(IllegalArgumentException.class, () -> CompressionCosts.getHeaderLength(1025))
+    );
+  }
+}
@@ -0,0 +1,97 @@
+/*
+ * Copyright 2020-2020 the ALttPJ Team @ https://github.com/alttpj
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *          http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.github.alttpj.library.compress;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.greaterThan;
+import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.lessThan;
+import static org.junit.jupiter.api.Assertions.assertAll;
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+
+import io.github.alttpj.library.compress.impl.CopyCompressAlgorithm;
+import io.github.alttpj.library.compress.impl.CopyExistingCompressionAlgorithm;
+import io.github.alttpj.library.compress.impl.IncrementByteCompressionAlgorithm;
+import io.github.alttpj.library.compress.impl.RepeatByteCompressionAlgorithm;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.Arrays;
+
+public class CompressionResultTest {
+
+  @Test
+  public void testLongerCommandFirst() {
+    // given
+    final byte[] data = {0x11, 0x11, 0x11, 0x11, 0x12, 0x13, 0x14, 0x15, 0x16};
+    final CompressionResult repeat = new CompressionResult(new RepeatByteCompressionAlgorithm(), data, 0, data.length);
+    final CompressionResult increment = new CompressionResult(new IncrementByteCompressionAlgorithm(), data, 3, data.length);
+
+    // then
+    assertAll(
+        () -> assertThat(increment.compareTo(repeat), is(lessThan(0))),
+        () -> assertThat(repeat.compareTo(increment), is(greaterThan(0)))
+    );
+  }
+
+  @Test
+  public void testMoreSavedBytesFirst() {
+    // given: 32 repeated bytes, which also match 33 bytes of the history.
+    final byte[] data = new byte[66];
+    Arrays.fill(data, 0, 32, (byte) 0xaa);
+    Arrays.fill(data, 33, 65, (byte) 0xaa);
+    final CompressionResult repeat = new CompressionResult(new RepeatByteCompressionAlgorithm(), data, 33, data.length);
+    final CompressionResult copyExisting = new CompressionResult(new CopyExistingCompressionAlgorithm(), data, 33, data.length);
+
+    // then: the longer command needs an extended header and saves one byte less.
+    assertAll(
+        () -> assertThat(copyExisting.getCommandLength(), is(greaterThan(repeat.getCommandLength()))),
+        () -> assertThat(repeat.getSavedBytes(), is(30)),
+        () -> assertThat(copyExisting.getSavedBytes(), is(29)),
+        () -> assertThat(repeat.compareTo(copyExisting), is(lessThan(0)))
+    );
+  }
+
+  @Test
+  public void testLowerCommandFirstOnEqualLength() {
+    // given
+    final byte[] data = {0x11, 0x12, 0x13};
+    final CompressionResult copy = new CompressionResult(new CopyCompressAlgorithm(), data, new byte[0]);
+    final CompressionResult repeat = new CompressionResult(new RepeatByteCompressionAlgorithm(), data, new byte[0]);
+
+    // then
+    assertAll(
+        () -> assertThat(copy.compareTo(repeat), is(lessThan(0))),
+        () -> assertThat(copy.compareTo(copy), is(0))
+    );
+  }
+
+  @Test
+  public void testViewReadsFromPosition() {
+    // given
+    final byte[] data = {0x01, 0x02, 0x33, 0x33, 0x33, 0x33};
+    final CompressionResult repeat = new CompressionResult(new RepeatByteCompressionAlgorithm(), data, 2, data.length);
+
+    // then
+    assertAll(
+        () -> assertThat(repeat.getCommandLength(), is(3)),
+        () -> assertArrayEquals(new byte[] {0b001_00011, 0x33}, repeat.apply()),
+        () -> assertArrayEquals(new byte[] {0x33, 0x33, 0x33, 0x33}, repeat.getInput()),
+        () -> assertArrayEquals(new byte[] {0x01, 0x02}, repeat.getAlreadyProcessed())
+    );
+  }
+}
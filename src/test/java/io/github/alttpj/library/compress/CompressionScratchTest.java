@@ -0,0 +1,71 @@
+/*
+ * Copyright 2020-2020 the ALttPJ Team @ https://github.com/alttpj
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *          http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.github.alttpj.library.compress;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.not;
+import static org.hamcrest.Matchers.sameInstance;
+import static org.junit.jupiter.api.Assertions.assertAll;
+
+import io.github.alttpj.library.compress.impl.HashChainMatchFinder;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayOutputStream;
+
+public class CompressionScratchTest {
+
+  @Test
+  public void testReleaseKeepsSmallBuffersOfLastLevel() {
+    // given
+    final CompressionScratch scratch = new CompressionScratch();
+    final HashChainMatchFinder fast = scratch.getMatchFinder(CompressionLevel.FAST);
+    final HashChainMatchFinder lazy = scratch.getMatchFinder(CompressionLevel.LAZY);
+    final ByteArrayOutputStream output = scratch.getOutput();
+    output.write(new byte[1024], 0, 1024);
+
+    // when
+    scratch.release();
+
+    // then
+    assertAll(
+        () -> assertThat(scratch.getOutput(), sameInstance(output)),
+        () -> assertThat("GREEDY and LAZY search alike", scratch.getMatchFinder(CompressionLevel.GREEDY), sameInstance(lazy)),
+        () -> assertThat(scratch.getMatchFinder(CompressionLevel.FAST), not(sameInstance(fast)))
+    );
+  }
+
+  @Test
+  public void testReleaseDropsGrownBuffers() {
+    // given
+    final CompressionScratch scratch = new CompressionScratch();
+    final byte[] input = new byte[0x4000];
+    final HashChainMatchFinder optimal = scratch.getMatchFinder(CompressionLevel.OPTIMAL);
+    optimal.find(input, input.length, input, 0, 0);
+    final ByteArrayOutputStream output = scratch.getOutput();
+    output.write(input, 0, input.length);
+
+    // when
+    scratch.release();
+
+    // then
+    assertAll(
+        () -> assertThat(scratch.getOutput(), not(sameInstance(output))),
+        () -> assertThat(scratch.getMatchFinder(CompressionLevel.OPTIMAL), not(sameInstance(optimal)))
+    );
+  }
+}
@@ -0,0 +1,211 @@
+/*
+ * Copyright 2020-2020 the ALttPJ Team @ https://github.com/alttpj
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *          http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.github.alttpj.library.compress;
+
+import static org.junit.jupiter.api.Assertions.assertAll;
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+public class DecompressedBlockCacheTest {
+
+  @Test
+  public void testHitAndMiss() throws IOException {
+    // given
+    final DecompressedBlockCache cache = new DecompressedBlockCache(1024);
+    final AtomicInteger loads = new AtomicInteger();
+
+    // when
+    final byte[] first = cache.get("rom", 0x10, () -> new byte[] {(byte) loads.incrementAndGet()});
+    first[0] = 0x7F;
+    final byte[] second = cache.get("rom", 0x10, () -> new byte[] {(byte) loads.incrementAndGet()});
+    final byte[] otherSource = cache.get("other", 0x10, () -> new byte[] {(byte) loads.incrementAndGet()});
+
+    // then
+    assertAll(
+        () -> assertArrayEquals(new byte[] {1}, second, "a copy is returned, so the cached block is unchanged"),
+        () -> assertArrayEquals(new byte[] {2}, otherSource),
+        () -> assertEquals(1L, cache.getHitCount()),
+        () -> assertEquals(2L, cache.getMissCount()),
+        () -> assertEquals(2L, cache.getWeight()),
+        () -> assertEquals(2, cache.size())
+    );
+  }
+
+  @Test
+  public void testEvictsLeastRecentlyUsed() throws IOException {
+    // given
+    final DecompressedBlockCache cache = new DecompressedBlockCache(100);
+    cache.get("rom", 1, () -> new byte[40]);
+    cache.get("rom", 2, () -> new byte[40]);
+    cache.get("rom", 1, () -> new byte[40]);
+
+    // when
+    cache.get("rom", 3, () -> new byte[40]);
+    cache.get("rom", 4, () -> new byte[101]);
+    final int sizeAfterOversizedBlock = cache.size();
+
+    // then
+    final AtomicInteger loads = new AtomicInteger();
+    cache.get("rom", 1, () -> new byte[loads.incrementAndGet()]);
+    cache.get("rom", 2, () -> new byte[loads.incrementAndGet()]);
+    assertAll(
+        () -> assertEquals(1, loads.get(), "block 2 was least recently used"),
+        () -> assertEquals(2, sizeAfterOversizedBlock, "blocks heavier than the maximum are not cached"),
+        () -> assertEquals(1L, cache.getEvictionCount()),
+        () -> assertEquals(81L, cache.getWeight())
+    );
+  }
+
+  @Test
+  public void testSingleFlightLoading() throws Exception {
+    // given
+    final DecompressedBlockCache cache = new DecompressedBlockCache(1024);
+    final AtomicInteger loads = new AtomicInteger();
+    final CountDownLatch loaderStarted = new CountDownLatch(1);
+    final CountDownLatch release = new CountDownLatch(1);
+    final ExecutorService executor = Executors.newFixedThreadPool(4);
+
+    // when
+    final List<Future<byte[]>> results = new ArrayList<>();
+    try {
+      for (int thread = 0; thread < 4; thread++) {
+        results.add(executor.submit(() -> cache.get("rom", 0x20, () -> {
+          loads.incrementAndGet();
+          loaderStarted.countDown();
+          await(release);
+          return new byte[] {0x42};
+        })));
+      }
+      loaderStarted.await(5, TimeUnit.SECONDS);
+      release.countDown();
+
+      for (final Future<byte[]> result : results) {
+        assertArrayEquals(new byte[] {0x42}, result.get(5, TimeUnit.SECONDS));
+      }
+    } finally {
+      executor.shutdownNow();
+    }
+
+    // then
+    assertAll(
+        () -> assertEquals(1, loads.get()),
+        () -> assertEquals(1L, cache.getMissCount()),
+        () -> assertEquals(3L, cache.getHitCount())
+    );
+  }
+
+  @Test
+  public void testFailedLoadIsNotCached() throws IOException {
+    // given
+    final DecompressedBlockCache cache = new DecompressedBlockCache(1024);
+
+    // when
+    assertThrows(IOException.class, () -> cache.get("rom", 0, () -> {
+      throw new IOException("invalid block");
+    }));
+    final byte[] block = cache.get("rom", 0, () -> new byte[] {0x01});
+
+    // then
+    assertAll(
+        () -> assertArrayEquals(new byte[] {0x01}, block),
+        () -> assertEquals(2L, cache.getMissCount())
+    );
+  }
+
+  @Test
+  public void testInvalidate() throws IOException {
+    // given
+    final DecompressedBlockCache cache = new DecompressedBlockCache(1024);
+    cache.get("rom", 1, () -> new byte[10]);
+    cache.get("rom", 2, () -> new byte[20]);
+
+    // when
+    cache.invalidate("rom", 1);
+    final long weightAfterInvalidate = cache.getWeight();
+    cache.invalidateAll();
+
+    // then
+    assertAll(
+        () -> assertEquals(20L, weightAfterInvalidate),
+        () -> assertEquals(0L, cache.getWeight()),
+        () -> assertEquals(0, cache.size()),
+        () -> assertEquals(0L, cache.getEvictionCount()),
+        () -> assertThrows(IllegalArgumentException.class, () -> new DecompressedBlockCache(-1))
+    );
+  }
+
+  @Test
+  public void testLoadStartedBeforeInvalidateIsNotCached() throws Exception {
+    // given
+    final DecompressedBlockCache cache = new DecompressedBlockCache(1024);
+    final CountDownLatch loaderStarted = new CountDownLatch(1);
+    final CountDownLatch release = new CountDownLatch(1);
+    final ExecutorService executor = Executors.newSingleThreadExecutor();
+
+    // when
+    final byte[] staleBlock;
+    final byte[] reloadedBlock;
+    try {
+      final Future<byte[]> stale = executor.submit(() -> cache.get("rom", 0x20, () -> {
+        loaderStarted.countDown();
+        await(release);
+        return new byte[] {0x01};
+      }));
+      loaderStarted.await(5, TimeUnit.SECONDS);
+      cache.invalidateAll();
+      reloadedBlock = cache.get("rom", 0x20, () -> new byte[] {0x02});
+      release.countDown();
+      staleBlock = stale.get(5, TimeUnit.SECONDS);
+    } finally {
+      executor.shutdownNow();
+    }
+    final byte[] cachedBlock = cache.get("rom", 0x20, () -> {
+      throw new IOException("not cached");
+    });
+
+    // then
+    assertAll(
+        () -> assertArrayEquals(new byte[] {0x01}, staleBlock),
+        () -> assertArrayEquals(new byte[] {0x02}, reloadedBlock),
+        () -> assertArrayEquals(new byte[] {0x02}, cachedBlock),
+        () -> assertEquals(1L, cache.getWeight())
+    );
+  }
+
+  private static void await(final CountDownLatch latch) throws IOException {
+    try {
+      latch.await(5, TimeUnit.SECONDS);
+    } catch (final InterruptedException interruptedException) {
+      Thread.currentThread().interrupt();
+      throw new InterruptedIOException();
+    }
+  }
+}
@@ -0,0 +1,88 @@
+/*
+ * Copyright 2020-2020 the ALttPJ Team @ https://github.com/alttpj
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *          http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.github.alttpj.library.compress;
+
+import io.github.alttpj.library.testhelper.IOUtils;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.util.Locale;
+
+/**
+ * Measures the decompression throughput on the sprites in {@code src/test/resources/gfx}.
+ *
+ * <p>Run with {@code mvn test-compile} and
+ * {@code java -cp target/classes:target/test-classes io.github.alttpj.library.compress.DecompressionBenchmark}.
+ * Throughput is given in decompressed bytes. {@link ByteArrayInputStream} synchronizes each read, which costs more
+ * than decoding; the {@link ByteBuffer} variant shows the cost of the decoder itself.</p>
+ */
+public class DecompressionBenchmark {
+
+  private static final String[] SPRITES = {"1up", "birb", "coin", "icerod", "meat", "yoshi", "z1link"};
+
+  private static final int ROUNDS = 5;
+
+  private static final long ROUND_NANOS = 1_000_000_000L;
+
+  public static void main(final String[] args) throws IOException {
+    final byte[][] blocks = new byte[SPRITES.length][];
+    for (int index = 0; index < SPRITES.length; index++) {
+      try (final InputStream inputStream = DecompressionBenchmark.class.getResourceAsStream("/gfx/" + SPRITES[index] + ".bin")) {
+        blocks[index] = IOUtils.readAllBytes(inputStream);
+      }
+    }
+
+    final byte[] destination = new byte[0x10000];
+    for (int round = 0; round < ROUNDS; round++) {
+      report("SnesDecompressor", blocks, block -> {
+        try (final SnesDecompressor decompressor = new SnesDecompressor(new ByteArrayInputStream(block))) {
+          return decompressor.getDecompressed().length;
+        }
+      });
+      report("decompress(byte[])", blocks, block -> SnesDecompressor.decompress(new ByteArrayInputStream(block), destination));
+      report("decompress(ByteBuffer)", blocks, block -> SnesDecompressor.decompress(ByteBuffer.wrap(block), ByteBuffer.wrap(destination)));
+      report("SnesDecompressorInputStream", blocks, block -> {
+        try (final SnesDecompressorInputStream inputStream = new SnesDecompressorInputStream(new ByteArrayInputStream(block))) {
+          return IOUtils.readAllBytes(inputStream).length;
+        }
+      });
+    }
+  }
+
+  private static void report(final String name, final byte[][] blocks, final Decompression decompression) throws IOException {
+    long decompressedBytes = 0L;
+    final long start = System.nanoTime();
+    long elapsed;
+
+    do {
+      for (final byte[] block : blocks) {
+        decompressedBytes += decompression.decompress(block);
+      }
+      elapsed = System.nanoTime() - start;
+    } while (elapsed < ROUND_NANOS);
+
+    System.out.println(String.format(Locale.ROOT, "%-28s %8.1f MB/s", name, decompressedBytes * 1000.0 / elapsed));
+  }
+
+  @FunctionalInterface
+  private interface Decompression {
+
+    int decompress(byte[] block) throws IOException;
+  }
+}
@@ -0,0 +1,138 @@
+/*
+ * Copyright 2020-2020 the ALttPJ Team @ https://github.com/alttpj
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *          http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.github.alttpj.library.compress;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.lessThan;
+import static org.hamcrest.Matchers.lessThanOrEqualTo;
+import static org.junit.jupiter.api.Assertions.assertAll;
+
+import io.github.alttpj.library.testhelper.IOUtils;
+
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.EnumSource;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.concurrent.ForkJoinPool;
+
+public class ParallelCompressorTest {
+
+  private static ForkJoinPool pool;
+
+  @BeforeAll
+  public static void createPool() {
+    pool = new ForkJoinPool(4);
+  }
+
+  @AfterAll
+  public static void shutdownPool() {
+    pool.shutdown();
+  }
+
+  @ParameterizedTest
+  @EnumSource(CompressionLevel.class)
+  public void testSegmentsDecompressToInput(final CompressionLevel compressionLevel) throws IOException {
+    // given
+    final byte[] in = createSprites(0x8000);
+
+    // when
+    final byte[] parallel = ParallelCompressor.compress(in, compressionLevel, pool, 3000);
+    final byte[] single = compress(in, compressionLevel);
+
+    // then
+    assertAll(
+        () -> assertThat(decompress(parallel), is(equalTo(in))),
+        () -> assertThat("segments can copy from all earlier segments", parallel.length, is(lessThanOrEqualTo(single.length * 103 / 100)))
+    );
+  }
+
+  @Test
+  public void testMergesCommandsAtBoundaries() throws IOException {
+    // given: a run of zeros and bytes without any pattern, both spanning segment boundaries.
+    final byte[] in = new byte[0x1000];
+    for (int ii = 0x800; ii < in.length; ii++) {
+      in[ii] = (byte) (ii * 0x9E3779B1 >>> 13);
+    }
+
+    // when
+    final byte[] parallel = ParallelCompressor.compress(in, CompressionLevel.LAZY, pool, 0x300);
+    final byte[] single = compress(in, CompressionLevel.LAZY);
+
+    // then
+    assertAll(
+        () -> assertThat(decompress(parallel), is(equalTo(in))),
+        () -> assertThat(parallel.length, is(lessThanOrEqualTo(single.length + 2)))
+    );
+  }
+
+  @Test
+  public void testSmallInputs() throws IOException {
+    // given
+    final byte[] sprite = createSprites(0x100);
+
+    // when
+    final byte[] empty = ParallelCompressor.compress(new byte[0], CompressionLevel.GREEDY);
+    final byte[] small = ParallelCompressor.compress(sprite, CompressionLevel.GREEDY, pool);
+
+    // then
+    assertAll(
+        () -> assertThat(empty, is(new byte[] {(byte) 0xff})),
+        () -> assertThat("one segment only", small, is(compress(sprite, CompressionLevel.GREEDY))),
+        () -> assertThat(small.length, is(lessThan(sprite.length)))
+    );
+  }
+
+  private byte[] createSprites(final int length) throws IOException {
+    final String[] gfxs = {"1up", "birb", "coin", "icerod", "meat", "yoshi", "z1link"};
+    final byte[] in = new byte[length];
+    int position = 0;
+    for (int ii = 0; position < in.length; ii++) {
+      final byte[] gfx;
+      try (final InputStream inputStream = this.getClass().getResourceAsStream("/gfx/u_" + gfxs[ii % gfxs.length] + ".bin")) {
+        gfx = IOUtils.readAllBytes(inputStream);
+      }
+      final int count = Math.min(gfx.length, in.length - position);
+      System.arraycopy(gfx, 0, in, position, count);
+      position += count;
+    }
+
+    return in;
+  }
+
+  private static byte[] compress(final byte[] in, final CompressionLevel compressionLevel) throws IOException {
+    final ByteArrayOutputStream output = new ByteArrayOutputStream();
+    SnesCompressor.compress(new ByteArrayInputStream(in), output, compressionLevel);
+
+    return output.toByteArray();
+  }
+
+  private static byte[] decompress(final byte[] compressed) {
+    try (final SnesDecompressor decompressor = new SnesDecompressor(new ByteArrayInputStream(compressed))) {
+      return decompressor.getDecompressed();
+    } catch (final IOException ioException) {
+      throw new IllegalStateException(ioException);
+    }
+  }
+}
@@ -0,0 +1,127 @@
+/*
+ * Copyright 2020-2020 the ALttPJ Team @ https://github.com/alttpj
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *          http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.github.alttpj.library.compress;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.greaterThan;
+import static org.hamcrest.Matchers.is;
+import static org.junit.jupiter.api.Assertions.assertAll;
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import io.github.alttpj.library.testhelper.IOUtils;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.EnumSource;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+
+public class SnesCompressorOutputStreamTest {
+
+  @ParameterizedTest
+  @EnumSource(CompressionLevel.class)
+  public void testSameAsSnesCompressor(final CompressionLevel compressionLevel) throws IOException {
+    // given
+    final byte[] original = readLargeInput();
+    final byte[] expected;
+    try (final SnesCompressor snesCompressor = new SnesCompressor(new ByteArrayInputStream(original), compressionLevel)) {
+      expected = snesCompressor.getCompressed().toByteArray();
+    }
+
+    // when written in odd pieces and single bytes
+    final ByteArrayOutputStream compressed = new ByteArrayOutputStream();
+    try (final SnesCompressorOutputStream out = new SnesCompressorOutputStream(compressed, compressionLevel)) {
+      int position = 0;
+      while (position + 777 < original.length) {
+        out.write(original, position, 777);
+        out.write(original[position + 777]);
+        position += 778;
+      }
+      out.write(original, position, original.length - position);
+    }
+
+    // then
+    assertArrayEquals(expected, compressed.toByteArray());
+  }
+
+  @Test
+  public void testCommandsWrittenBeforeClose() throws IOException {
+    // given
+    final byte[] original = readLargeInput();
+    final ByteArrayOutputStream compressed = new ByteArrayOutputStream();
+
+    // when
+    try (final SnesCompressorOutputStream out = new SnesCompressorOutputStream(compressed)) {
+      out.write(original);
+      out.flush();
+
+      // then
+      assertThat("all but the last 1024 bytes are final", compressed.size(), is(greaterThan(0)));
+    }
+  }
+
+  @Test
+  public void testFinishKeepsStreamOpen() throws IOException {
+    // given
+    final ByteArrayOutputStream compressed = new ByteArrayOutputStream();
+    final SnesCompressorOutputStream out = new SnesCompressorOutputStream(compressed);
+    out.write(new byte[] {0x01, 0x01, 0x01, 0x01});
+
+    // when
+    out.finish();
+    out.finish();
+    compressed.write(0x42);
+
+    // then
+    assertAll(
+        () -> assertArrayEquals(new byte[] {0b001_00011, 0x01, (byte) 0xff, 0x42}, compressed.toByteArray()),
+        () -> assertThrows(IOException.class, () -> out.write(0x01)),
+        () -> assertThrows(IndexOutOfBoundsException.class, () -> out.write(new byte[2], 1, 2))
+    );
+  }
+
+  @Test
+  public void testStaticCompress() throws IOException {
+    // given
+    final byte[] original = readLargeInput();
+    final ByteArrayOutputStream compressed = new ByteArrayOutputStream();
+
+    // when
+    SnesCompressor.compress(new ByteArrayInputStream(original), compressed);
+
+    // then
+    try (final SnesDecompressor snesDecompressor = new SnesDecompressor(new ByteArrayInputStream(compressed.toByteArray()))) {
+      assertThat(snesDecompressor.getDecompressed(), is(equalTo(original)));
+    }
+  }
+
+  private byte[] readLargeInput() throws IOException {
+    final ByteArrayOutputStream buffer = new ByteArrayOutputStream();
+    for (final String gfx : new String[] {"1up", "birb", "coin", "icerod", "meat", "yoshi", "z1link"}) {
+      try (final InputStream inputStream = this.getClass().getResourceAsStream("/gfx/u_" + gfx + ".bin")) {
+        buffer.write(IOUtils.readAllBytes(inputStream));
+      }
+    }
+
+    return buffer.toByteArray();
+  }
+}
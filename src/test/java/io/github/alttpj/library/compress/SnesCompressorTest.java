@@ -19,19 +19,29 @@ package io.github.alttpj.library.compress;
 import static org.hamcrest.MatcherAssert.assertThat;
 import static org.hamcrest.Matchers.equalTo;
 import static org.hamcrest.Matchers.greaterThan;
+import static org.hamcrest.Matchers.greaterThanOrEqualTo;
 import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.lessThan;
 import static org.hamcrest.Matchers.lessThanOrEqualTo;
 import static org.junit.jupiter.api.Assertions.assertAll;
 import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import io.github.alttpj.library.testhelper.IOUtils;
 
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.EnumSource;
 import org.junit.jupiter.params.provider.ValueSource;
 
 import java.io.ByteArrayInputStream;
 import java.io.ByteArrayOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.Random;
 
 public class SnesCompressorTest {
 
@@ -80,6 +90,354 @@ public class SnesCompressorTest {
     assertThat(decompressed, is(equalTo((original))));
   }
 
+  @ParameterizedTest
+  @ValueSource(strings = {"1up", "birb", "coin", "icerod", "meat", "yoshi", "z1link"})
+  public void testOptimalCompression(final String gfx) throws IOException {
+    // given
+    final byte[] original = readResource("/gfx/u_" + gfx + ".bin");
+
+    // when
+    final byte[] greedy = compress(original, CompressionLevel.GREEDY);
+    final byte[] optimal = compress(original, CompressionLevel.OPTIMAL);
+
+    // then
+    assertAll(
+        () -> assertThat("must not be larger than greedy", optimal.length, is(lessThanOrEqualTo(greedy.length))),
+        () -> assertThat(decompress(optimal), is(equalTo(original)))
+    );
+  }
+
+  @ParameterizedTest
+  @EnumSource(CompressionLevel.class)
+  public void testCompressionLevel(final CompressionLevel compressionLevel) throws IOException {
+    for (final String gfx : new String[] {"1up", "birb", "coin", "icerod", "meat", "yoshi", "z1link"}) {
+      // given
+      final byte[] original = readResource("/gfx/u_" + gfx + ".bin");
+
+      // when
+      final byte[] compressed = compress(original, compressionLevel);
+      final byte[] optimal = compress(original, CompressionLevel.OPTIMAL);
+
+      // then
+      assertAll(
+          () -> assertThat(gfx, compressed.length, is(lessThanOrEqualTo(original.length))),
+          () -> assertThat(gfx, optimal.length, is(lessThanOrEqualTo(compressed.length))),
+          () -> assertThat(gfx, decompress(compressed), is(equalTo(original)))
+      );
+    }
+  }
+
+  @ParameterizedTest
+  @EnumSource(CompressionLevel.class)
+  public void testCompressionLevelTinyInput(final CompressionLevel compressionLevel) throws IOException {
+    assertAll(
+        () -> assertArrayEquals(new byte[] {(byte) 0xFF}, compress(new byte[0], compressionLevel)),
+        () -> assertArrayEquals(new byte[] {0x00, 0x42, (byte) 0xFF}, compress(new byte[] {0x42}, compressionLevel))
+    );
+  }
+
+  @ParameterizedTest
+  @EnumSource(CompressionLevel.class)
+  public void testCompressArrayLikeStream(final CompressionLevel compressionLevel) throws IOException {
+    for (final String gfx : new String[] {"1up", "birb", "coin", "icerod", "meat", "yoshi", "z1link"}) {
+      // given
+      final byte[] original = readResource("/gfx/u_" + gfx + ".bin");
+
+      // when
+      final byte[] compressed = SnesCompressor.compress(original, compressionLevel);
+
+      // then
+      assertArrayEquals(compress(original, compressionLevel), compressed, gfx);
+    }
+  }
+
+  @ParameterizedTest
+  @EnumSource(CompressionLevel.class)
+  public void testResetCompressesNextInput(final CompressionLevel compressionLevel) throws IOException {
+    // given
+    final SnesCompressor compressor = new SnesCompressor(new ByteArrayInputStream(readResource("/gfx/u_z1link.bin")), compressionLevel);
+    compressor.getCompressed();
+
+    for (final String gfx : new String[] {"1up", "birb", "coin", "icerod", "meat", "yoshi"}) {
+      // when
+      final byte[] original = readResource("/gfx/u_" + gfx + ".bin");
+      compressor.reset(new ByteArrayInputStream(original));
+      final byte[] compressed = compressor.getCompressed().toByteArray();
+
+      // then
+      assertArrayEquals(compress(original, compressionLevel), compressed, gfx);
+    }
+  }
+
+  @ParameterizedTest
+  @EnumSource(CompressionLevel.class)
+  public void testEstimateCompressedSize(final CompressionLevel compressionLevel) throws IOException {
+    for (final String gfx : new String[] {"1up", "birb", "coin", "icerod", "meat", "yoshi", "z1link"}) {
+      // given
+      final byte[] original = readResource("/gfx/u_" + gfx + ".bin");
+
+      // when
+      final int size = SnesCompressor.estimateCompressedSize(original, compressionLevel);
+
+      // then
+      assertThat(gfx, size, is(SnesCompressor.compress(original, compressionLevel).length));
+    }
+  }
+
+  @Test
+  public void testEstimateCompressedSizeUpperBound() throws IOException {
+    for (final String gfx : new String[] {"1up", "birb", "coin", "icerod", "meat", "yoshi", "z1link"}) {
+      // given
+      final byte[] original = readResource("/gfx/u_" + gfx + ".bin");
+
+      // when
+      final int upperBound = SnesCompressor.estimateCompressedSizeUpperBound(original);
+
+      // then
+      assertThat(gfx, upperBound, is(greaterThanOrEqualTo(SnesCompressor.compress(original, CompressionLevel.OPTIMAL).length)));
+    }
+
+    final byte[] literals = new byte[2000];
+    new Random(24).nextBytes(literals);
+    assertAll(
+        () -> assertThat(SnesCompressor.estimateCompressedSizeUpperBound(new byte[0]), is(1)),
+        () -> assertThat("one extended repeat", SnesCompressor.estimateCompressedSizeUpperBound(new byte[100]), is(4)),
+        () -> assertThat("two extended copies", SnesCompressor.estimateCompressedSizeUpperBound(literals), is(2005))
+    );
+  }
+
+  @Test
+  public void testCompressByteBuffer() throws IOException {
+    // given
+    final byte[] original = readResource("/gfx/u_birb.bin");
+    final ByteBuffer direct = ByteBuffer.allocateDirect(original.length + 8);
+    direct.position(8);
+    direct.put(original);
+    direct.position(8);
+    final ByteBuffer slice = ByteBuffer.wrap(Arrays.copyOf(original, original.length + 8), 0, original.length);
+    final byte[] expected = compress(original, CompressionLevel.LAZY);
+
+    // when
+    final byte[] fromDirect = SnesCompressor.compress(direct, CompressionLevel.LAZY);
+    final byte[] fromSlice = SnesCompressor.compress(slice, CompressionLevel.LAZY);
+    final byte[] fromArray = SnesCompressor.compress(ByteBuffer.wrap(original), CompressionLevel.LAZY);
+
+    // then
+    assertAll(
+        () -> assertArrayEquals(expected, fromDirect),
+        () -> assertArrayEquals(expected, fromSlice),
+        () -> assertArrayEquals(expected, fromArray),
+        () -> assertThat("position is not changed", direct.position(), is(8))
+    );
+  }
+
+  @Test
+  public void testCompressToFitGenerousBudget() throws IOException {
+    // given
+    final byte[] original = readResource("/gfx/u_birb.bin");
+
+    // when
+    final FitResult result = SnesCompressor.compressToFit(original, original.length);
+
+    // then
+    assertAll(
+        () -> assertThat(result.getStatus(), is(FitResult.Status.FITS)),
+        () -> assertThat("cheapest level first", result.getCompressionLevel(), is(CompressionLevel.FAST)),
+        () -> assertThat(result.getSize(), is(result.getCompressed().length)),
+        () -> assertThat(decompress(result.getCompressed()), is(equalTo(original)))
+    );
+  }
+
+  @ParameterizedTest
+  @ValueSource(strings = {"1up", "birb", "coin", "icerod", "meat", "yoshi", "z1link"})
+  public void testCompressToFitEscalates(final String gfx) throws IOException {
+    // given
+    final byte[] original = readResource("/gfx/u_" + gfx + ".bin");
+    final int budget = SnesCompressor.estimateCompressedSize(original, CompressionLevel.OPTIMAL);
+
+    // when
+    final FitResult result = SnesCompressor.compressToFit(original, budget);
+
+    // then
+    assertThat(result.getStatus(), is(FitResult.Status.FITS));
+    for (final CompressionLevel skipped : CompressionLevel.values()) {
+      if (skipped == result.getCompressionLevel()) {
+        break;
+      }
+      assertThat(skipped + " does not fit", SnesCompressor.estimateCompressedSize(original, skipped), is(greaterThan(budget)));
+    }
+    assertAll(
+        () -> assertArrayEquals(SnesCompressor.compress(original, result.getCompressionLevel()), result.getCompressed()),
+        () -> assertThat(decompress(result.getCompressed()), is(equalTo(original)))
+    );
+  }
+
+  @Test
+  public void testCompressToFitStopsAtFirstFittingLevel() throws IOException {
+    // given
+    final byte[] original = readResource("/gfx/u_1up.bin");
+    final int budget = SnesCompressor.estimateCompressedSize(original, CompressionLevel.LAZY);
+
+    // when
+    final FitResult result = SnesCompressor.compressToFit(original, budget);
+
+    // then
+    assertAll(
+        () -> assertThat("OPTIMAL would be smaller", SnesCompressor.estimateCompressedSize(original, CompressionLevel.OPTIMAL),
+            is(lessThan(budget))),
+        () -> assertThat(result.getCompressionLevel(), is(CompressionLevel.LAZY)),
+        () -> assertThat(result.getSize(), is(budget))
+    );
+  }
+
+  @Test
+  public void testCompressToFitTooLarge() throws IOException {
+    // given
+    final byte[] original = readResource("/gfx/u_birb.bin");
+    final int optimalSize = SnesCompressor.estimateCompressedSize(original, CompressionLevel.OPTIMAL);
+
+    // when
+    final FitResult result = SnesCompressor.compressToFit(original, optimalSize - 1);
+
+    // then
+    assertAll(
+        () -> assertThat(result.getStatus(), is(FitResult.Status.TOO_LARGE)),
+        () -> assertThat(result.getCompressionLevel(), is(CompressionLevel.OPTIMAL)),
+        () -> assertThat(result.getSize(), is(optimalSize)),
+        () -> assertThrows(IllegalStateException.class, result::getCompressed)
+    );
+  }
+
+  @Test
+  public void testCompressToFitTimeLimit() {
+    // given
+    final byte[] in = new byte[0x10000];
+    new Random(25).nextBytes(in);
+
+    // when
+    final FitResult result = SnesCompressor.compressToFit(in, 1, Duration.ZERO);
+
+    // then
+    assertAll(
+        () -> assertThat(result.getStatus(), is(FitResult.Status.TIMED_OUT)),
+        () -> assertThat(result.getSize(), is(-1)),
+        () -> assertThrows(IllegalStateException.class, result::getCompressed),
+        () -> assertThrows(IllegalArgumentException.class, () -> SnesCompressor.compressToFit(in, 0))
+    );
+  }
+
+  @Test
+  public void testCompressionLargeInput() throws IOException {
+    // given: 64 KiB of sprites, each followed by a few bytes which do not compress.
+    final String[] gfxs = {"1up", "birb", "coin", "icerod", "meat", "yoshi", "z1link"};
+    final byte[] in = new byte[0x10000];
+    int position = 0;
+    for (int ii = 0; position < in.length; ii++) {
+      final byte[] gfx = readResource("/gfx/u_" + gfxs[ii % gfxs.length] + ".bin");
+      final int length = Math.min(gfx.length, in.length - position);
+      System.arraycopy(gfx, 0, in, position, length);
+      position += length;
+
+      for (int noise = 0; noise < 16 && position < in.length; noise++) {
+        in[position++] = (byte) (position * 97 + ii);
+      }
+    }
+
+    // when
+    final byte[] compressed = compress(in, CompressionLevel.GREEDY);
+
+    // then
+    assertAll(
+        () -> assertThat(compressed.length, is(lessThanOrEqualTo(in.length / 4))),
+        () -> assertThat(decompress(compressed), is(equalTo(in)))
+    );
+  }
+
+  @Test
+  public void testOptimalCompressionUsesExtendedCopy() throws IOException {
+    // given: 100 distinct bytes without runs or increments.
+    final byte[] in = new byte[100];
+    for (int ii = 0; ii < in.length; ii++) {
+      in[ii] = (byte) (ii * 97);
+    }
+
+    // when
+    final byte[] compressed = compress(in, CompressionLevel.OPTIMAL);
+
+    // then
+    assertAll(
+        () -> assertThat("one extended copy command + eos", compressed.length, is(2 + in.length + 1)),
+        () -> assertThat(decompress(compressed), is(equalTo(in)))
+    );
+  }
+
+  @Test
+  public void testLazyMatchingDefersToNextByte() throws IOException {
+    // given: at 11, three repeated bytes. At 12, the first ten bytes repeat.
+    final byte[] in = {0x09, 0x09, 0x01, 0x02, 0x03, 0x04, 0x05, 0x06, 0x07, 0x08, 0x20, 0x09, 0x09, 0x09, 0x01, 0x02, 0x03, 0x04,
+        0x05, 0x06, 0x07, 0x08};
+
+    // when
+    final byte[] compressed = compress(in, CompressionLevel.LAZY);
+
+    // then
+    final byte[] expected = {
+        0b000_00001, 0x09, 0x09,
+        0b011_00111, 0x01,
+        0b000_00001, 0x20, 0x09,
+        (byte) 0b100_01001, 0x00, 0x00,
+        (byte) 0xff
+    };
+    assertAll(
+        () -> assertArrayEquals(expected, compressed, "the repeat at 11 is copied for the longer match at 12"),
+        () -> assertThat(decompress(compressed), is(equalTo(in)))
+    );
+  }
+
+  @Test
+  public void testGreedyMatchingTakesTheCommandAtEachByte() throws IOException {
+    // given: at 11, three repeated bytes. At 12, the first ten bytes repeat.
+    final byte[] in = {0x09, 0x09, 0x01, 0x02, 0x03, 0x04, 0x05, 0x06, 0x07, 0x08, 0x20, 0x09, 0x09, 0x09, 0x01, 0x02, 0x03, 0x04,
+        0x05, 0x06, 0x07, 0x08};
+
+    // when
+    final byte[] compressed = compress(in, CompressionLevel.GREEDY);
+
+    // then
+    final byte[] expected = {
+        0b000_00001, 0x09, 0x09,
+        0b011_00111, 0x01,
+        0b000_00000, 0x20,
+        0b001_00010, 0x09,
+        0b011_00111, 0x01,
+        (byte) 0xff
+    };
+    assertAll(
+        () -> assertArrayEquals(expected, compressed, "the repeat at 11 is taken, the match at 12 is not looked at"),
+        () -> assertThat(decompress(compressed), is(equalTo(in)))
+    );
+  }
+
+  @Test
+  public void testOptimalCompressionExtendsLongMatches() throws IOException {
+    // given: a pattern of 37 bytes, repeated for 64 KiB.
+    final byte[] pattern = new byte[37];
+    new Random(2).nextBytes(pattern);
+    final byte[] in = new byte[0x10000];
+    for (int ii = 0; ii < in.length; ii++) {
+      in[ii] = pattern[ii % pattern.length];
+    }
+
+    // when
+    final byte[] compressed = compress(in, CompressionLevel.OPTIMAL);
+
+    // then
+    assertAll(
+        () -> assertThat("pattern + 64 copies of 1024 bytes + eos", compressed.length, is(lessThanOrEqualTo(2 + 37 + 64 * 4 + 1))),
+        () -> assertThat(decompress(compressed), is(equalTo(in)))
+    );
+  }
+
   @Test
   public void testCompressionByteByteByteByte() throws IOException {
     // given
@@ -109,6 +467,26 @@ public class SnesCompressorTest {
     assertArrayEquals(expected, compressed, "Should compress like this.");
   }
 
+  private static byte[] compress(final byte[] in, final CompressionLevel compressionLevel) throws IOException {
+    try (final ByteArrayInputStream bais = new ByteArrayInputStream(in);
+        final SnesCompressor snesCompressor = new SnesCompressor(bais, compressionLevel)) {
+      return snesCompressor.getCompressed().toByteArray();
+    }
+  }
+
+  private static byte[] decompress(final byte[] compressed) throws IOException {
+    try (final ByteArrayInputStream bais = new ByteArrayInputStream(compressed);
+        final SnesDecompressor snesDecompressor = new SnesDecompressor(bais)) {
+      return snesDecompressor.getDecompressed();
+    }
+  }
+
+  private byte[] readResource(final String resource) throws IOException {
+    try (final InputStream inputStream = this.getClass().getResourceAsStream(resource)) {
+      return IOUtils.readAllBytes(inputStream);
+    }
+  }
+
   private int getExpectedMaxLength(final String gfx) throws IOException {
     int expectedMaxLength = 0;
 
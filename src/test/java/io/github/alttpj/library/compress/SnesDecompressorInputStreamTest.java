@@ -0,0 +1,157 @@
+/*
+ * Copyright 2020-2020 the ALttPJ Team @ https://github.com/alttpj
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *          http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.github.alttpj.library.compress;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.is;
+import static org.junit.jupiter.api.Assertions.assertAll;
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import io.github.alttpj.library.testhelper.IOUtils;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.ValueSource;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+
+public class SnesDecompressorInputStreamTest {
+
+  @ParameterizedTest
+  @ValueSource(strings = {"1up", "birb", "coin", "icerod", "meat", "yoshi", "z1link"})
+  public void testSameAsSnesDecompressor(final String gfx) throws IOException {
+    // given
+    final byte[] compressed = readResource("/gfx/" + gfx + ".bin");
+    final byte[] expected;
+    try (final SnesDecompressor snesDecompressor = new SnesDecompressor(new ByteArrayInputStream(compressed))) {
+      expected = snesDecompressor.getDecompressed();
+    }
+
+    // when read in pieces of 7 bytes
+    final ByteArrayOutputStream decompressed = new ByteArrayOutputStream();
+    try (final SnesDecompressorInputStream in = new SnesDecompressorInputStream(new ByteArrayInputStream(compressed))) {
+      final byte[] buffer = new byte[7];
+      int read;
+      while ((read = in.read(buffer)) != -1) {
+        decompressed.write(buffer, 0, read);
+      }
+
+      // then
+      assertAll(
+          () -> assertArrayEquals(expected, decompressed.toByteArray()),
+          () -> assertThat(in.getDecompressedLength(), is((long) expected.length)),
+          () -> assertThat(in.read(), is(-1))
+      );
+    }
+  }
+
+  @Test
+  public void testStopsAtEndOfStreamMarker() throws IOException {
+    // given: repeat byte, overlapping copy, end of stream marker and the start of the next block.
+    final byte[] bytes = {
+        (byte) 0b000_00001, 0x11, 0x22,
+        (byte) 0b100_00100, 0x00, 0x00,
+        (byte) 0xff,
+        0x42, 0x43
+    };
+    final ByteArrayInputStream source = new ByteArrayInputStream(bytes);
+
+    // when
+    final byte[] decompressed;
+    try (final SnesDecompressorInputStream in = new SnesDecompressorInputStream(source)) {
+      decompressed = IOUtils.readAllBytes(in);
+
+      // then
+      assertAll(
+          () -> assertArrayEquals(new byte[] {0x11, 0x22, 0x11, 0x22, 0x11, 0x22, 0x11}, decompressed),
+          () -> assertThat(source.read(), is(0x42))
+      );
+    }
+  }
+
+  @Test
+  public void testSingleByteReads() throws IOException {
+    // given: extended repeat word (40 bytes) and increment.
+    final byte[] bytes = {(byte) 0b111_010_00, 39, 0x01, 0x02, (byte) 0b011_00010, (byte) 0xfe, (byte) 0xff};
+    final ByteArrayOutputStream decompressed = new ByteArrayOutputStream();
+
+    // when
+    try (final SnesDecompressorInputStream in = new SnesDecompressorInputStream(new ByteArrayInputStream(bytes))) {
+      int value;
+      while ((value = in.read()) != -1) {
+        decompressed.write(value);
+      }
+    }
+
+    // then
+    final byte[] result = decompressed.toByteArray();
+    assertAll(
+        () -> assertThat(result.length, is(43)),
+        () -> assertThat(result[39], is((byte) 0x02)),
+        () -> assertThat(new byte[] {result[40], result[41], result[42]}, is(equalTo(new byte[] {(byte) 0xfe, (byte) 0xff, 0x00})))
+    );
+  }
+
+  @Test
+  public void testLargerThanHistory() throws IOException {
+    // given: 80 KiB of sprites, compressed with references to all of the first 64 KiB.
+    final byte[] sprite = readResource("/gfx/u_z1link.bin");
+    final byte[] original = new byte[80 * 1024];
+    for (int position = 0; position < original.length; position += sprite.length + 3) {
+      System.arraycopy(sprite, 0, original, position, Math.min(sprite.length, original.length - position));
+    }
+    final ByteArrayOutputStream compressed = new ByteArrayOutputStream();
+    SnesCompressor.compress(new ByteArrayInputStream(original), compressed);
+
+    // when
+    final byte[] decompressed;
+    try (final InputStream in = new SnesDecompressorInputStream(new ByteArrayInputStream(compressed.toByteArray()))) {
+      decompressed = IOUtils.readAllBytes(in);
+    }
+
+    // then
+    assertArrayEquals(original, decompressed);
+  }
+
+  @Test
+  public void testInvalidInput() {
+    assertAll(
+        () -> assertThrows(EOFException.class, () -> readAll(new byte[] {(byte) 0b000_00011, 0x01})),
+        () -> assertThrows(EOFException.class, () -> readAll(new byte[] {(byte) 0b001_00011})),
+        () -> assertThrows(IOException.class, () -> readAll(new byte[] {(byte) 0b100_00011, 0x00, 0x00})),
+        () -> assertThrows(UnsupportedOperationException.class, () -> readAll(new byte[] {(byte) 0b111_111_00, 0x00}))
+    );
+  }
+
+  private static byte[] readAll(final byte[] compressed) throws IOException {
+    try (final InputStream in = new SnesDecompressorInputStream(new ByteArrayInputStream(compressed))) {
+      return IOUtils.readAllBytes(in);
+    }
+  }
+
+  private byte[] readResource(final String resource) throws IOException {
+    try (final InputStream inputStream = this.getClass().getResourceAsStream(resource)) {
+      return IOUtils.readAllBytes(inputStream);
+    }
+  }
+}
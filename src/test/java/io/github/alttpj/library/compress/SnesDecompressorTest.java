@@ -17,15 +17,26 @@
 package io.github.alttpj.library.compress;
 
 import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import io.github.alttpj.library.testhelper.IOUtils;
 
 import org.junit.jupiter.api.Assertions;
 import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
 import org.junit.jupiter.params.ParameterizedTest;
 import org.junit.jupiter.params.provider.ValueSource;
 
 import java.io.ByteArrayInputStream;
+import java.io.EOFException;
 import java.io.IOException;
 import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
 
 public class SnesDecompressorTest {
 
@@ -100,4 +111,275 @@ public class SnesDecompressorTest {
     final byte[] expected = new byte[42];
     assertArrayEquals(expected, decompressed);
   }
+
+  @Test
+  public void testOverlappingCopyRepeatsPattern() throws IOException {
+    // given
+    final byte[] bytes = new byte[] {
+        // five bytes as-is, the last three form the pattern.
+        (byte) 0b000_00100, (byte) 0x01, (byte) 0x02, (byte) 0x0a, (byte) 0x0b, (byte) 0x0c,
+        // extended, command 4, len = 1000, offset = 2
+        (byte) 0b111_10011, (byte) 0b11100111, (byte) 0x02, (byte) 0x00,
+        (byte) 0xff};
+
+    // when decompressed
+    final byte[] decompressed;
+    try (final SnesDecompressor snesDecompressor = new SnesDecompressor(new ByteArrayInputStream(bytes))) {
+      decompressed = snesDecompressor.getDecompressed();
+    }
+
+    // then
+    final byte[] expected = new byte[1005];
+    expected[0] = 0x01;
+    expected[1] = 0x02;
+    for (int ii = 2; ii < expected.length; ii++) {
+      expected[ii] = (byte) (0x0a + (ii - 2) % 3);
+    }
+    assertArrayEquals(expected, decompressed);
+  }
+
+  @Test
+  public void testCopyBeyondOutputFails() {
+    // given
+    final byte[] bytes = new byte[] {(byte) 0b000_00000, (byte) 0x01, (byte) 0b100_00011, (byte) 0x01, (byte) 0x00, (byte) 0xff};
+
+    // then
+    Assertions.assertThrows(IllegalStateException.class, () -> {
+      try (final SnesDecompressor snesDecompressor = new SnesDecompressor(new ByteArrayInputStream(bytes))) {
+        snesDecompressor.getDecompressed();
+      }
+    });
+  }
+
+  @Test
+  public void testUnknownCommandFails() {
+    // given: copy one byte, then extended command 6.
+    final byte[] bytes = new byte[] {(byte) 0b000_00000, (byte) 0x01, (byte) 0b111_110_00, (byte) 0x00, (byte) 0xff};
+
+    // then: the same type as in earlier versions, on every path.
+    Assertions.assertAll(
+        () -> assertThrows(UnsupportedOperationException.class, () -> {
+          try (final SnesDecompressor snesDecompressor = new SnesDecompressor(new ByteArrayInputStream(bytes))) {
+            snesDecompressor.getDecompressed();
+          }
+        }),
+        () -> assertThrows(UnsupportedOperationException.class,
+            () -> SnesDecompressor.decompress(new ByteArrayInputStream(bytes), new byte[16])),
+        () -> assertThrows(UnsupportedOperationException.class,
+            () -> SnesDecompressor.decompress(ByteBuffer.wrap(bytes), ByteBuffer.allocate(16))),
+        () -> assertThrows(UnsupportedOperationException.class,
+            () -> IOUtils.readAllBytes(new SnesDecompressorInputStream(new ByteArrayInputStream(bytes))))
+    );
+  }
+
+  @Test
+  public void testUnknownCommandFailsBeforeCapacityCheck() {
+    // given: extended command 7 with a length of 768 bytes, which does not fit into the destination.
+    final byte[] bytes = new byte[] {(byte) 0b111_111_10, (byte) 0xff, (byte) 0xff};
+
+    // then
+    Assertions.assertAll(
+        () -> assertThrows(UnsupportedOperationException.class,
+            () -> SnesDecompressor.decompress(new ByteArrayInputStream(bytes), new byte[16])),
+        () -> assertThrows(UnsupportedOperationException.class,
+            () -> SnesDecompressor.decompress(ByteBuffer.wrap(bytes), ByteBuffer.allocate(16)))
+    );
+  }
+
+  @ParameterizedTest
+  @ValueSource(strings = {"1up", "birb", "coin", "icerod", "meat", "yoshi", "z1link"})
+  public void testDecompressIntoArray(final String gfx) throws IOException {
+    // given
+    final byte[] compressed = readResource("/gfx/" + gfx + ".bin");
+    final byte[] expected = readResource("/gfx/u_" + gfx + ".bin");
+    final byte[] destination = new byte[0x10000];
+
+    // when decompressed twice into the same buffer, the second time at an offset.
+    final int first = SnesDecompressor.decompress(new ByteArrayInputStream(compressed), destination);
+    final int second = SnesDecompressor.decompress(new ByteArrayInputStream(compressed), destination, 5, destination.length - 5);
+
+    // then
+    Assertions.assertAll(
+        () -> assertEquals(expected.length, first),
+        () -> assertEquals(expected.length, second),
+        () -> assertArrayEquals(expected, Arrays.copyOfRange(destination, 5, 5 + second))
+    );
+  }
+
+  @Test
+  public void testDecompressByteBuffers() throws IOException {
+    // given: two blocks, the second one with an overlapping copy.
+    final ByteBuffer source = ByteBuffer.wrap(new byte[] {
+        (byte) 0b011_00011, (byte) 0x10, (byte) 0xff,
+        (byte) 0b000_00001, (byte) 0x01, (byte) 0x02, (byte) 0b100_00010, (byte) 0x00, (byte) 0x00, (byte) 0xff,
+        (byte) 0x42});
+    final ByteBuffer destination = ByteBuffer.allocate(16);
+    destination.put((byte) 0x99);
+
+    // when
+    final int first = SnesDecompressor.decompress(source, destination);
+    final int second = SnesDecompressor.decompress(source, destination);
+
+    // then
+    final byte[] expected = {(byte) 0x99, 0x10, 0x11, 0x12, 0x13, 0x01, 0x02, 0x01, 0x02, 0x01};
+    Assertions.assertAll(
+        () -> assertEquals(4, first),
+        () -> assertEquals(5, second),
+        () -> assertEquals(10, source.position()),
+        () -> assertEquals(expected.length, destination.position()),
+        () -> assertArrayEquals(expected, Arrays.copyOf(destination.array(), expected.length))
+    );
+  }
+
+  @Test
+  public void testDecompressDestinationTooSmall() {
+    // given
+    final byte[] compressed = {(byte) 0b001_00111, (byte) 0x10, (byte) 0xff};
+
+    // then
+    Assertions.assertAll(
+        () -> assertThrows(IllegalArgumentException.class,
+            () -> SnesDecompressor.decompress(new ByteArrayInputStream(compressed), new byte[7])),
+        () -> assertThrows(IllegalArgumentException.class,
+            () -> SnesDecompressor.decompress(ByteBuffer.wrap(compressed), ByteBuffer.allocateDirect(8))),
+        () -> assertThrows(IndexOutOfBoundsException.class,
+            () -> SnesDecompressor.decompress(new ByteArrayInputStream(compressed), new byte[8], 4, 5))
+    );
+  }
+
+  @Test
+  public void testDecompressInvalidBlock() {
+    Assertions.assertAll(
+        () -> assertThrows(EOFException.class,
+            () -> SnesDecompressor.decompress(new ByteArrayInputStream(new byte[] {(byte) 0b000_00011, 0x01}), new byte[8])),
+        () -> assertThrows(EOFException.class,
+            () -> SnesDecompressor.decompress(new ByteArrayInputStream(new byte[] {(byte) 0b111_000_00}), new byte[8])),
+        () -> assertThrows(IOException.class,
+            () -> SnesDecompressor.decompress(new ByteArrayInputStream(new byte[] {(byte) 0b100_00000, 0x00, 0x00}), new byte[8])),
+        () -> assertThrows(UnsupportedOperationException.class,
+            () -> SnesDecompressor.decompress(new ByteArrayInputStream(new byte[] {(byte) 0b111_111_00, 0x00}), new byte[8]))
+    );
+  }
+
+  @Test
+  public void testWalkBlocksInOneStream() throws IOException {
+    // given: two blocks followed by a trailing byte.
+    final ByteArrayInputStream source = new ByteArrayInputStream(twoBlocks());
+
+    // when
+    final SnesDecompressor first = new SnesDecompressor(source, false);
+    final byte[] firstDecompressed = first.getDecompressed();
+    final SnesDecompressor second = new SnesDecompressor(source, false);
+    final byte[] secondDecompressed = second.getDecompressed();
+
+    // then
+    Assertions.assertAll(
+        () -> assertArrayEquals(new byte[] {0x10, 0x11, 0x12, 0x13}, firstDecompressed),
+        () -> assertArrayEquals(new byte[] {0x01, 0x02, 0x01, 0x02, 0x01}, secondDecompressed),
+        () -> assertEquals(3L, first.getCompressedLength()),
+        () -> assertEquals(0L, first.getCompressedStart()),
+        () -> assertEquals(7L, second.getCompressedLength()),
+        () -> assertEquals(0x42, source.read())
+    );
+  }
+
+  @Test
+  public void testCompressedLengthWhenReadingAhead() throws IOException {
+    // given: the block is followed by another one, which is read ahead but not consumed.
+    final byte[] blocks = twoBlocks();
+
+    // when
+    final byte[] decompressed;
+    final long compressedLength;
+    try (final SnesDecompressor decompressor = new SnesDecompressor(new ByteArrayInputStream(blocks, 3, blocks.length - 3))) {
+      decompressed = decompressor.getDecompressed();
+      compressedLength = decompressor.getCompressedLength();
+    }
+
+    // then
+    Assertions.assertAll(
+        () -> assertArrayEquals(new byte[] {0x01, 0x02, 0x01, 0x02, 0x01}, decompressed),
+        () -> assertEquals(7L, compressedLength)
+    );
+  }
+
+  @Test
+  public void testWalkBlocksInFileChannel(@TempDir final Path tempDir) throws IOException {
+    // given
+    final Path rom = tempDir.resolve("blocks.bin");
+    Files.write(rom, twoBlocks());
+
+    try (final FileChannel channel = FileChannel.open(rom)) {
+      // when
+      final SnesDecompressor first = new SnesDecompressor(channel);
+      final byte[] firstDecompressed = first.getDecompressed();
+      final long positionAfterFirst = channel.position();
+      final SnesDecompressor second = new SnesDecompressor(channel);
+      final byte[] secondDecompressed = second.getDecompressed();
+      second.close();
+
+      // then
+      Assertions.assertAll(
+          () -> assertEquals(4, firstDecompressed.length),
+          () -> assertEquals(5, secondDecompressed.length),
+          () -> assertEquals(3L, positionAfterFirst),
+          () -> assertEquals(3L, second.getCompressedStart()),
+          () -> assertEquals(10L, second.getCompressedEnd()),
+          () -> assertEquals(10L, channel.position()),
+          () -> assertEquals(true, channel.isOpen())
+      );
+    }
+  }
+
+  @Test
+  public void testWalkBlocksInByteBuffer() throws IOException {
+    // given
+    final ByteBuffer source = ByteBuffer.wrap(twoBlocks());
+    source.position(3);
+
+    // when
+    final SnesDecompressor decompressor = new SnesDecompressor(source);
+    final byte[] decompressed = decompressor.getDecompressed();
+
+    // then
+    Assertions.assertAll(
+        () -> assertEquals(5, decompressed.length),
+        () -> assertEquals(3L, decompressor.getCompressedStart()),
+        () -> assertEquals(7L, decompressor.getCompressedLength()),
+        () -> assertEquals(10L, decompressor.getCompressedEnd()),
+        () -> assertEquals(10, source.position())
+    );
+  }
+
+  @Test
+  public void testResetDecompressesNextBlock() throws IOException {
+    // given
+    final String[] gfxs = {"1up", "birb", "coin"};
+    final SnesDecompressor decompressor = new SnesDecompressor(new ByteArrayInputStream(readResource("/gfx/meat.bin")));
+    decompressor.getDecompressed();
+
+    for (final String gfx : gfxs) {
+      // when
+      final byte[] compressed = readResource("/gfx/" + gfx + ".bin");
+      decompressor.reset(new ByteArrayInputStream(compressed));
+      final byte[] decompressed = decompressor.getDecompressed();
+
+      // then
+      assertArrayEquals(readResource("/gfx/u_" + gfx + ".bin"), decompressed, gfx);
+      assertEquals(compressed.length, decompressor.getCompressedLength(), gfx);
+    }
+  }
+
+  private static byte[] twoBlocks() {
+    return new byte[] {
+        (byte) 0b011_00011, (byte) 0x10, (byte) 0xff,
+        (byte) 0b000_00001, (byte) 0x01, (byte) 0x02, (byte) 0b100_00010, (byte) 0x00, (byte) 0x00, (byte) 0xff,
+        (byte) 0x42};
+  }
+
+  private byte[] readResource(final String resource) throws IOException {
+    try (final InputStream inputStream = this.getClass().getResourceAsStream(resource)) {
+      return IOUtils.readAllBytes(inputStream);
+    }
+  }
 }
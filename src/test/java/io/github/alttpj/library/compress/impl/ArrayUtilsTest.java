@@ -0,0 +1,127 @@
+/*
+ * Copyright 2020-2020 the ALttPJ Team @ https://github.com/alttpj
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *          http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.github.alttpj.library.compress.impl;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.not;
+import static org.hamcrest.Matchers.sameInstance;
+import static org.junit.jupiter.api.Assertions.assertAll;
+
+import org.junit.jupiter.api.Test;
+
+import java.nio.ByteBuffer;
+import java.util.Random;
+
+public class ArrayUtilsTest {
+
+  @Test
+  public void testMismatchAtEveryLane() {
+    for (int difference = 0; difference < 40; difference++) {
+      // given
+      final byte[] first = new byte[48];
+      final byte[] second = new byte[52];
+      second[4 + difference] = 0x01;
+
+      // when
+      final int length = ArrayUtils.mismatch(first, 0, second, 4, 48);
+
+      // then
+      assertThat(length, is(difference));
+    }
+  }
+
+  @Test
+  public void testMismatchAtEveryLaneInOneArray() {
+    for (int difference = 0; difference < 40; difference++) {
+      // given
+      final byte[] data = new byte[100];
+      data[52 + difference] = 0x01;
+
+      // when
+      final int length = ArrayUtils.mismatch(data, 0, data, 52, 48);
+
+      // then
+      assertThat(length, is(difference));
+    }
+  }
+
+  @Test
+  public void testLittleEndianViewIsNotKept() {
+    // given
+    final byte[] data = {0x01, 0x02, 0x03, 0x04, 0x05, 0x06, 0x07, 0x08};
+
+    // when
+    final ByteBuffer view = ArrayUtils.getLittleEndianView(data);
+
+    // then
+    assertAll(
+        () -> assertThat(view.array(), is(sameInstance(data))),
+        () -> assertThat(view.getLong(0), is(0x0807_0605_0403_0201L)),
+        () -> assertThat(ArrayUtils.getLittleEndianView(data), is(not(sameInstance(view))))
+    );
+  }
+
+  @Test
+  public void testMismatchOfEqualRanges() {
+    // given
+    final byte[] data = new byte[64];
+
+    // when
+    final int length = ArrayUtils.mismatch(data, 1, data, 30, 29);
+
+    // then
+    assertThat(length, is(29));
+  }
+
+  @Test
+  public void testMatchLengthRunsOverEndOfHistory() {
+    // given
+    final byte[] data = new byte[64];
+    for (int ii = 0; ii < data.length; ii++) {
+      data[ii] = (byte) (ii % 3);
+    }
+    data[50] = 0x7f;
+
+    // when
+    final int length = ArrayUtils.matchLength(data, 12, 9, data, 12, 52);
+
+    // then
+    assertThat("the three bytes before the input repeat until the changed byte", length, is(38));
+  }
+
+  @Test
+  public void testSameAsBytewiseComparison() {
+    final Random random = new Random(20);
+    final byte[] data = new byte[2048];
+    for (int ii = 0; ii < data.length; ii++) {
+      data[ii] = (byte) random.nextInt(2);
+    }
+
+    for (int position = 1; position < data.length; position++) {
+      final int candidate = random.nextInt(position);
+      final int maxLength = Math.min(data.length - position, 1 + random.nextInt(300));
+
+      int expected = 0;
+      while (expected < maxLength && data[candidate + expected] == data[position + expected]) {
+        expected++;
+      }
+
+      assertThat(ArrayUtils.matchLength(data, position, candidate, data, position, maxLength), is(expected));
+    }
+  }
+}
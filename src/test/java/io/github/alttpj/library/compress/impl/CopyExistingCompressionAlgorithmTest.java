@@ -21,6 +21,9 @@ import static org.hamcrest.Matchers.is;
 import static org.junit.jupiter.api.Assertions.assertAll;
 import static org.junit.jupiter.api.Assertions.assertArrayEquals;
 
+import io.github.alttpj.library.compress.CompressionAlgorithm;
+import io.github.alttpj.library.compress.CompressionAlgorithms;
+import io.github.alttpj.library.compress.CompressionMatch;
 import io.github.alttpj.library.compress.SnesDecompressor;
 import java.io.ByteArrayInputStream;
 import java.io.IOException;
@@ -145,4 +148,43 @@ public class CopyExistingCompressionAlgorithmTest {
     assertArrayEquals(expected, compressed);
   }
 
+
+  @Test
+  public void testMatchWithoutState() {
+    // given
+    final byte[] data = {0x01, 0x02, 0x03, 0x04, 0x05, 0x09, 0x01, 0x02, 0x03, 0x04, 0x05, 0x01, 0x02, 0x03, 0x04, 0x05, 0x07};
+    final CopyExistingCompressionAlgorithm algo = new CopyExistingCompressionAlgorithm();
+
+    // when
+    final long match = algo.match(data, 11, data.length);
+    final long indexedMatch = algo.match(data, 11, data.length, new HashChainMatchFinder());
+    final long noMatch = algo.match(data, 5, 9);
+
+    // then
+    assertAll(
+        () -> assertThat(CompressionMatch.getCommandLength(match), is(4)),
+        () -> assertThat("most recent source wins on equal length", CompressionMatch.getOffset(match), is(6)),
+        () -> assertThat(indexedMatch, is(match)),
+        () -> assertThat(noMatch, is(CompressionMatch.NONE)),
+        () -> assertThat(algo.encode(data, 11, match), is(new byte[] {(byte) 0b10000100, 0x06, 0x00})),
+        () -> assertThat("match keeps no result", algo.getPosInUncompressed(), is(-1))
+    );
+  }
+
+  @Test
+  public void testBruteAfterMatch() {
+    // given
+    final byte[] data = {0x01, 0x02, 0x03, 0x04, 0x05, 0x01, 0x02, 0x03, 0x04, 0x05};
+    final CompressionAlgorithm algo = CompressionAlgorithms.COPY_EXISTING.getCompressionAlgorithm();
+    algo.match(data, 5, data.length);
+
+    // when
+    final int commandLength = algo.brute(data, 5, data.length);
+
+    // then
+    assertAll(
+        () -> assertThat(commandLength, is(4)),
+        () -> assertThat(algo.apply(data, 5, commandLength), is(new byte[] {(byte) 0b10000100, 0x00, 0x00}))
+    );
+  }
 }
@@ -0,0 +1,202 @@
+/*
+ * Copyright 2020-2020 the ALttPJ Team @ https://github.com/alttpj
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *          http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.github.alttpj.library.compress.impl;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.is;
+import static org.junit.jupiter.api.Assertions.assertAll;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import org.junit.jupiter.api.Test;
+
+public class HashChainMatchFinderTest {
+
+  @Test
+  public void testFindsLongestOfSeveralCandidates() {
+    // given
+    final byte[] history = {
+        0x01, 0x02, 0x03, 0x04, 0x05, 0x00,
+        0x01, 0x02, 0x03, 0x04, 0x05, 0x06, 0x07, 0x00,
+        0x01, 0x02, 0x03, 0x00
+    };
+    final byte[] input = {0x01, 0x02, 0x03, 0x04, 0x05, 0x06, 0x07, 0x08, 0x09, 0x0a, 0x0b, 0x0c, 0x0d, 0x0e, 0x0f, 0x10};
+    final HashChainMatchFinder matchFinder = new HashChainMatchFinder();
+
+    // when
+    final int length = matchFinder.find(history, history.length, input, 0, input.length);
+
+    // then
+    assertAll(
+        () -> assertThat("7 bytes match, which a halving search from 8 bytes would miss", length, is(7)),
+        () -> assertThat(matchFinder.getMatchOffset(), is(6))
+    );
+  }
+
+  @Test
+  public void testMatchRunsOverEndOfHistory() {
+    // given
+    final byte[] history = {0x11, 0x12, 0x13, (byte) 0xab, (byte) 0xcd};
+    final byte[] input = {(byte) 0xab, (byte) 0xcd, (byte) 0xab, (byte) 0xcd, (byte) 0xab, 0x00};
+    final HashChainMatchFinder matchFinder = new HashChainMatchFinder();
+
+    // when
+    final int length = matchFinder.find(history, history.length, input, 0, input.length);
+
+    // then
+    assertAll(
+        () -> assertThat(length, is(5)),
+        () -> assertThat(matchFinder.getMatchOffset(), is(3))
+    );
+  }
+
+  @Test
+  public void testHistoryAndInputInSameArray() {
+    // given
+    final byte[] data = {0x01, 0x02, 0x03, 0x04, 0x05, 0x01, 0x02, 0x03, 0x04, 0x05, 0x01, 0x02};
+    final HashChainMatchFinder matchFinder = new HashChainMatchFinder();
+
+    // when
+    final int length = matchFinder.find(data, 5, data, 5, data.length - 5);
+
+    // then
+    assertAll(
+        () -> assertThat(length, is(7)),
+        () -> assertThat(matchFinder.getMatchOffset(), is(0))
+    );
+  }
+
+  @Test
+  public void testIncrementalHistory() {
+    // given
+    final byte[] data = {0x01, 0x02, 0x03, 0x04, 0x09, 0x09, 0x01, 0x02, 0x03, 0x04, 0x09, 0x01, 0x02, 0x03, 0x04};
+    final HashChainMatchFinder matchFinder = new HashChainMatchFinder();
+
+    // when
+    final int first = matchFinder.find(data, 6, data, 6, 4);
+    final int second = matchFinder.find(data, 11, data, 11, 4);
+
+    // then
+    assertAll(
+        () -> assertThat(first, is(4)),
+        () -> assertThat(second, is(4)),
+        () -> assertThat("most recent match wins on equal length", matchFinder.getMatchOffset(), is(6))
+    );
+  }
+
+  @Test
+  public void testShorterHistoryResetsIndex() {
+    // given
+    final byte[] first = {0x01, 0x02, 0x03, 0x04, 0x05, 0x06};
+    final byte[] second = {0x07, 0x08, 0x09};
+    final byte[] input = {0x01, 0x02, 0x03, 0x04};
+    final HashChainMatchFinder matchFinder = new HashChainMatchFinder();
+    matchFinder.find(first, first.length, input, 0, input.length);
+
+    // when
+    final int length = matchFinder.find(second, second.length, input, 0, input.length);
+
+    // then
+    assertAll(
+        () -> assertThat(length, is(0)),
+        () -> assertThat(matchFinder.getMatchOffset(), is(-1))
+    );
+  }
+
+  @Test
+  public void testResetForgetsHistory() {
+    // given
+    final byte[] first = {0x01, 0x02, 0x03, 0x04, 0x05, 0x06};
+    final byte[] second = {0x07, 0x08, 0x09, 0x0a, 0x01, 0x02, 0x03, 0x04};
+    final byte[] input = {0x01, 0x02, 0x03, 0x04};
+    final HashChainMatchFinder matchFinder = new HashChainMatchFinder();
+    matchFinder.find(first, first.length, input, 0, input.length);
+
+    // when
+    matchFinder.reset();
+    final int length = matchFinder.find(second, second.length, input, 0, input.length);
+
+    // then
+    assertAll(
+        () -> assertThat(length, is(4)),
+        () -> assertThat(matchFinder.getMatchOffset(), is(4))
+    );
+  }
+
+  @Test
+  public void testManyResets() {
+    // given
+    final byte[] data = {0x01, 0x02, 0x03, 0x04, 0x05, 0x01, 0x02, 0x03, 0x04, 0x05};
+    final HashChainMatchFinder matchFinder = new HashChainMatchFinder();
+
+    for (int reset = 0; reset < 0x10002; reset++) {
+      matchFinder.find(data, 5, data, 5, 5);
+      matchFinder.reset();
+    }
+
+    // when
+    final int length = matchFinder.find(data, 5, data, 5, 5);
+
+    // then
+    assertAll(
+        () -> assertThat(length, is(5)),
+        () -> assertThat(matchFinder.getMatchOffset(), is(0))
+    );
+  }
+
+  @Test
+  public void testNoSourceBeyondMaxOffset() {
+    // given
+    final byte[] history = new byte[HashChainMatchFinder.MAX_OFFSET + 16];
+    final byte[] pattern = {0x11, 0x22, 0x33, 0x44, 0x55, 0x66};
+    System.arraycopy(pattern, 0, history, HashChainMatchFinder.MAX_OFFSET + 4, pattern.length);
+    final HashChainMatchFinder matchFinder = new HashChainMatchFinder();
+
+    // when
+    final int length = matchFinder.find(history, history.length, pattern, 0, pattern.length);
+
+    // then
+    assertThat(length, is(0));
+  }
+
+  @Test
+  public void testStopsAtNiceLength() {
+    // given: the older candidate matches all 8 bytes, the more recent one only 5.
+    final byte[] history = {
+        0x01, 0x02, 0x03, 0x04, 0x05, 0x06, 0x07, 0x08, 0x00,
+        0x01, 0x02, 0x03, 0x04, 0x05, 0x00
+    };
+    final byte[] input = {0x01, 0x02, 0x03, 0x04, 0x05, 0x06, 0x07, 0x08};
+    final HashChainMatchFinder matchFinder = new HashChainMatchFinder(HashChainMatchFinder.DEFAULT_MAX_CHAIN_LENGTH, 4);
+
+    // when
+    final int length = matchFinder.find(history, history.length, input, 0, input.length);
+
+    // then
+    assertAll(
+        () -> assertThat("first match of the nice length wins", length, is(5)),
+        () -> assertThat(matchFinder.getMatchOffset(), is(9))
+    );
+  }
+
+  @Test
+  public void testInvalidChainLength() {
+    assertAll(
+        () -> assertThrows(IllegalArgumentException.class, () -> new HashChainMatchFinder(0)),
+        () -> assertThrows(IllegalArgumentException.class, () -> new HashChainMatchFinder(1, 0))
+    );
+  }
+}
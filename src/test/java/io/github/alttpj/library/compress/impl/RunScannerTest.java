@@ -0,0 +1,154 @@
+/*
+ * Copyright 2020-2020 the ALttPJ Team @ https://github.com/alttpj
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *          http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.github.alttpj.library.compress.impl;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.is;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.Random;
+
+public class RunScannerTest {
+
+  @Test
+  public void testRepeatedBreaksAtEveryLane() {
+    for (int length = 1; length < 40; length++) {
+      // given
+      final byte[] data = new byte[48];
+      data[length] = 0x01;
+
+      // when
+      final int count = RunScanner.countRepeated(data, 0, data.length);
+
+      // then
+      assertThat(count, is(length));
+    }
+  }
+
+  @Test
+  public void testRepeatedStopsAtEnd() {
+    // given
+    final byte[] data = new byte[64];
+
+    // when
+    final int count = RunScanner.countRepeated(data, 3, 30);
+
+    // then
+    assertThat(count, is(27));
+  }
+
+  @Test
+  public void testAlternatingBreaksAtEveryLane() {
+    for (int length = 2; length < 40; length++) {
+      // given
+      final byte[] data = new byte[48];
+      for (int ii = 0; ii < data.length; ii++) {
+        data[ii] = (byte) (ii % 2 == 0 ? 0xab : 0xcd);
+      }
+      data[length] = 0x01;
+
+      // when
+      final int count = RunScanner.countAlternating(data, 0, data.length);
+
+      // then
+      assertThat(count, is(length));
+    }
+  }
+
+  @Test
+  public void testIncrementingEndsBeforeSignedOverflow() {
+    // given
+    final byte[] data = new byte[64];
+    for (int ii = 0; ii < data.length; ii++) {
+      data[ii] = (byte) (0x70 + ii);
+    }
+
+    // when
+    final int count = RunScanner.countIncrementing(data, 0, data.length);
+
+    // then
+    assertThat("0x7f is the last byte of the run", count, is(16));
+  }
+
+  @Test
+  public void testIncrementingRunsOverZero() {
+    // given
+    final byte[] data = new byte[64];
+    for (int ii = 0; ii < data.length; ii++) {
+      data[ii] = (byte) (0xf0 + ii);
+    }
+
+    // when
+    final int count = RunScanner.countIncrementing(data, 0, data.length);
+
+    // then
+    assertThat(count, is(64));
+  }
+
+  @Test
+  public void testSameAsBytewiseComparison() {
+    final Random random = new Random(19);
+    final byte[] data = new byte[4096];
+    int index = 0;
+    while (index < data.length) {
+      final int length = Math.min(1 + random.nextInt(80), data.length - index);
+      final int value = random.nextInt(256);
+      final int kind = random.nextInt(4);
+      for (int ii = 0; ii < length; ii++) {
+        data[index + ii] = (byte) (kind == 0 ? value : kind == 1 ? value + ii : kind == 2 ? value ^ (ii & 1) : random.nextInt(256));
+      }
+      index += length;
+    }
+
+    for (int position = 0; position < data.length - 2; position++) {
+      final int end = Math.min(data.length, position + 1 + random.nextInt(200));
+      assertThat(RunScanner.countRepeated(data, position, end), is(countRepeated(data, position, end)));
+      assertThat(RunScanner.countIncrementing(data, position, end), is(countIncrementing(data, position, end)));
+      if (end - position >= 2) {
+        assertThat(RunScanner.countAlternating(data, position, end), is(countAlternating(data, position, end)));
+      }
+    }
+  }
+
+  private static int countRepeated(final byte[] data, final int position, final int end) {
+    int count = 1;
+    while (position + count < end && data[position + count] == data[position]) {
+      count++;
+    }
+
+    return count;
+  }
+
+  private static int countAlternating(final byte[] data, final int position, final int end) {
+    int count = 2;
+    while (position + count < end && data[position + count] == data[position + count % 2]) {
+      count++;
+    }
+
+    return count;
+  }
+
+  private static int countIncrementing(final byte[] data, final int position, final int end) {
+    int count = 1;
+    while (position + count < end && data[position + count] == data[position] + count) {
+      count++;
+    }
+
+    return count;
+  }
+}
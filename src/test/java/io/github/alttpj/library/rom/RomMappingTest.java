@@ -0,0 +1,66 @@
+/*
+ * Copyright 2020-2020 the ALttPJ Team @ https://github.com/alttpj
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *          http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.github.alttpj.library.rom;
+
+import static org.junit.jupiter.api.Assertions.assertAll;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.CsvSource;
+
+public class RomMappingTest {
+
+  @ParameterizedTest
+  @CsvSource({
+      "LOROM, 0x008000, 0x000000",
+      "LOROM, 0x0CFBA9, 0x067BA9",
+      "LOROM, 0x8CFBA9, 0x067BA9",
+      "LOROM, 0xFFFFFF, 0x3FFFFF",
+      "HIROM, 0xC00000, 0x000000",
+      "HIROM, 0xC12345, 0x012345",
+      "HIROM, 0x018000, 0x018000",
+      "HIROM, 0x412345, 0x012345"
+  })
+  public void testToFileOffset(final RomMapping mapping, final String address, final String offset) {
+    assertEquals(Integer.decode(offset), mapping.toFileOffset(Integer.decode(address)));
+  }
+
+  @ParameterizedTest
+  @CsvSource({
+      "LOROM, 0x000000, 0x008000",
+      "LOROM, 0x067BA9, 0x0CFBA9",
+      "LOROM, 0x3FFFFF, 0xFFFFFF",
+      "HIROM, 0x012345, 0xC12345"
+  })
+  public void testToSnesAddress(final RomMapping mapping, final String offset, final String address) {
+    assertEquals(Integer.decode(address), mapping.toSnesAddress(Integer.decode(offset)));
+  }
+
+  @Test
+  public void testInvalidAddresses() {
+    assertAll(
+        () -> assertThrows(IllegalArgumentException.class, () -> RomMapping.LOROM.toFileOffset(0x0C1234)),
+        () -> assertThrows(IllegalArgumentException.class, () -> RomMapping.LOROM.toFileOffset(0x7E8000)),
+        () -> assertThrows(IllegalArgumentException.class, () -> RomMapping.HIROM.toFileOffset(0x001234)),
+        () -> assertThrows(IllegalArgumentException.class, () -> RomMapping.HIROM.toFileOffset(0x7F0000)),
+        () -> assertThrows(IllegalArgumentException.class, () -> RomMapping.LOROM.toSnesAddress(0x400000)),
+        () -> assertThrows(IllegalArgumentException.class, () -> RomMapping.HIROM.toSnesAddress(-1))
+    );
+  }
+}
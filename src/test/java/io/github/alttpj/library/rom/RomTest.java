@@ -0,0 +1,166 @@
+/*
+ * Copyright 2020-2020 the ALttPJ Team @ https://github.com/alttpj
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *          http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.github.alttpj.library.rom;
+
+import static org.junit.jupiter.api.Assertions.assertAll;
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import io.github.alttpj.library.testhelper.IOUtils;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.SortedMap;
+import java.util.concurrent.ForkJoinPool;
+
+public class RomTest {
+
+  private static final String[] SPRITES = {"1up", "birb", "coin", "icerod", "meat", "yoshi", "z1link"};
+
+  private static final int POINTER_TABLE = 0x100;
+
+  private static final int FIRST_BLOCK = 0x1000;
+
+  @Test
+  public void testOpenSkipsCopierHeader(@TempDir final Path tempDir) throws IOException {
+    // given
+    final byte[] image = createImage();
+    final byte[] headered = new byte[image.length + 0x200];
+    System.arraycopy(image, 0, headered, 0x200, image.length);
+    final Path file = tempDir.resolve("headered.sfc");
+    Files.write(file, headered);
+
+    // when
+    final Rom rom = Rom.open(file, RomMapping.LOROM);
+
+    // then
+    assertAll(
+        () -> assertEquals(image.length, rom.size()),
+        () -> assertEquals(image[FIRST_BLOCK] & 0xFF, rom.readByte(FIRST_BLOCK)),
+        () -> assertEquals(RomMapping.LOROM, rom.getMapping())
+    );
+  }
+
+  @Test
+  public void testDecompressPointerTable() throws IOException {
+    // given
+    final Rom rom = Rom.wrap(ByteBuffer.wrap(createImage()), RomMapping.LOROM);
+
+    // when
+    final int[] offsets = rom.readPointers(POINTER_TABLE, SPRITES.length);
+    final SortedMap<Integer, byte[]> blocks = rom.decompressPointerTable(POINTER_TABLE, SPRITES.length);
+
+    // then
+    assertEquals(SPRITES.length, blocks.size());
+    for (int index = 0; index < SPRITES.length; index++) {
+      assertArrayEquals(readResource("/gfx/u_" + SPRITES[index] + ".bin"), blocks.get(offsets[index]), SPRITES[index]);
+    }
+  }
+
+  @Test
+  public void testDecompressAllOnPool() throws IOException {
+    // given
+    final Rom rom = Rom.wrap(ByteBuffer.wrap(createImage()), RomMapping.LOROM);
+    final int[] offsets = rom.readPointers(POINTER_TABLE, SPRITES.length);
+    final int[] withDuplicate = {offsets[3], offsets[0], offsets[3]};
+    final ForkJoinPool pool = new ForkJoinPool(2);
+
+    // when
+    final SortedMap<Integer, byte[]> blocks;
+    try {
+      blocks = rom.decompressAll(withDuplicate, pool);
+    } finally {
+      pool.shutdown();
+    }
+
+    // then
+    assertAll(
+        () -> assertEquals(2, blocks.size()),
+        () -> assertEquals(offsets[0], blocks.firstKey()),
+        () -> assertArrayEquals(rom.decompress(offsets[3]), blocks.get(offsets[3]))
+    );
+  }
+
+  @Test
+  public void testSplitPointers() {
+    // given: pointers to $00:8123 and $01:8004, stored as separate low, high and bank tables.
+    final byte[] image = new byte[0x8010];
+    image[0] = 0x23;
+    image[1] = 0x04;
+    image[2] = (byte) 0x81;
+    image[3] = (byte) 0x80;
+    image[4] = 0x00;
+    image[5] = 0x01;
+    final Rom rom = Rom.wrap(ByteBuffer.wrap(image), RomMapping.LOROM);
+
+    // when
+    final int[] offsets = rom.readSplitPointers(4, 2, 0, 2);
+
+    // then
+    assertAll(
+        () -> assertArrayEquals(new int[] {0x0123, 0x8004}, offsets),
+        () -> assertThrows(IllegalArgumentException.class, () -> rom.readSplitPointers(2, 0, 4, 2))
+    );
+  }
+
+  @Test
+  public void testInvalidBlocks() {
+    // given
+    final Rom rom = Rom.wrap(ByteBuffer.wrap(new byte[] {(byte) 0b000_00011, 0x01, (byte) 0xFF}), RomMapping.HIROM);
+
+    // then
+    assertAll(
+        () -> assertThrows(IOException.class, () -> rom.decompress(0)),
+        () -> assertThrows(IOException.class, () -> rom.decompressAll(new int[] {1, 0, 2})),
+        () -> assertThrows(IllegalArgumentException.class, () -> rom.decompress(3)),
+        () -> assertThrows(IllegalArgumentException.class, () -> rom.slice(-1))
+    );
+  }
+
+  /**
+   * Creates a LoROM image of two banks with a pointer table to all sprites.
+   */
+  private byte[] createImage() throws IOException {
+    final byte[] image = new byte[0x10000];
+    int offset = FIRST_BLOCK;
+    for (int index = 0; index < SPRITES.length; index++) {
+      final byte[] compressed = readResource("/gfx/" + SPRITES[index] + ".bin");
+      System.arraycopy(compressed, 0, image, offset, compressed.length);
+
+      final int address = RomMapping.LOROM.toSnesAddress(offset);
+      image[POINTER_TABLE + index * 3] = (byte) address;
+      image[POINTER_TABLE + index * 3 + 1] = (byte) (address >> 8);
+      image[POINTER_TABLE + index * 3 + 2] = (byte) (address >> 16);
+      offset += compressed.length + 0x10;
+    }
+
+    return image;
+  }
+
+  private byte[] readResource(final String resource) throws IOException {
+    try (final InputStream inputStream = this.getClass().getResourceAsStream(resource)) {
+      return IOUtils.readAllBytes(inputStream);
+    }
+  }
+}